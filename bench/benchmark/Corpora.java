@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class provides the inputs of the benchmarks: the bundled testfiles and two
+ * synthetic corpora whose characters follow a Zipf distribution, one with a small
+ * alphabet (64 ASCII characters) and one with a huge alphabet (20000 CJK characters).
+ * The synthetic corpora are generated with a fixed seed, so every run sees the same
+ * data.
+ * The testfiles are read from the directory "testfiles" in the working directory or
+ * from the directory given by the system property "testfiles.dir".
+ * @author Raphael Brandis
+ */
+public class Corpora {
+    /**
+     * The name of the synthetic corpus with a small alphabet
+     */
+    public static final String SMALL_ALPHABET = "synthetic-small";
+    
+    /**
+     * The name of the synthetic corpus with a huge alphabet
+     */
+    public static final String HUGE_ALPHABET = "synthetic-huge";
+    
+    // the number of characters of each synthetic corpus
+    private static final int SYNTHETIC_LENGTH = 1 << 20;
+    
+    /**
+     * Returns the characters (code points) of a corpus.
+     * @param name the name of a testfile or of a synthetic corpus
+     * @return the code points
+     * @throws java.io.IOException 
+     */
+    public static int[] getCharacters(String name) throws IOException {
+        if (name.equals(SMALL_ALPHABET)) {
+            return generate(' ', 64, 1);
+        } else if (name.equals(HUGE_ALPHABET)) {
+            return generate(0x4E00, 20000, 2);
+        }
+        byte[] bytes = Files.readAllBytes(new File(getTestfilesDirectory(), name).toPath());
+        return new String(bytes, "UTF-8").codePoints().toArray();
+    }
+    
+    /**
+     * Returns a file containing a corpus in UTF-8. Synthetic corpora are written to a
+     * temporary file, which is deleted when the JVM exits.
+     * @param name the name of a testfile or of a synthetic corpus
+     * @return the file
+     * @throws java.io.IOException 
+     */
+    public static File getFile(String name) throws IOException {
+        if (!name.equals(SMALL_ALPHABET) && !name.equals(HUGE_ALPHABET)) {
+            return new File(getTestfilesDirectory(), name);
+        }
+        
+        File file = File.createTempFile(name, ".txt");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        int[] characters = getCharacters(name);
+        writer.write(new String(characters, 0, characters.length));
+        writer.close();
+        return file;
+    }
+    
+    private static File getTestfilesDirectory() {
+        return new File(System.getProperty("testfiles.dir", "testfiles"));
+    }
+    
+    // generates characters from the given range whose frequencies follow Zipf's law
+    private static int[] generate(int firstCharacter, int alphabetSize, long seed) {
+        // the cumulative probabilities of the ranks 1 to alphabetSize
+        double[] cumulative = new double[alphabetSize];
+        double sum = 0;
+        for (int i = 0; i < alphabetSize; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        
+        Random random = new Random(seed);
+        int[] characters = new int[SYNTHETIC_LENGTH];
+        for (int i = 0; i < characters.length; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            characters[i] = firstCharacter + (rank < 0 ? -rank - 1 : rank);
+        }
+        return characters;
+    }
+}
@@ -0,0 +1,91 @@
+package benchmark;
+
+import huffmanTreeStructure.CoderType;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import main.Decoder;
+import main.Encoder;
+import main.SymbolType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures compressing and decompressing whole files with the {@link Encoder} and the
+ * {@link Decoder}, including the file I/O. Run with "-prof gc" to see the allocation
+ * rate.
+ * @author Raphael Brandis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+    /**
+     * The adaptive Huffman coder
+     */
+    @Param({"FGK", "VITTER"})
+    public String coder;
+    
+    /**
+     * The corpus (see {@link Corpora})
+     */
+    @Param({"in5k.txt", "in228k.txt", "in912k.txt", Corpora.SMALL_ALPHABET, Corpora.HUGE_ALPHABET})
+    public String corpus;
+    
+    private File input;
+    private File compressed;
+    private File decompressed;
+    
+    /**
+     * Creates the input and compresses it once for the decompression benchmark.
+     * @throws java.io.IOException 
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.input = Corpora.getFile(this.corpus);
+        this.compressed = File.createTempFile("benchmark", ".ahc");
+        this.decompressed = File.createTempFile("benchmark", ".txt");
+        this.compress();
+    }
+    
+    /**
+     * Deletes the temporary files.
+     */
+    @TearDown
+    public void tearDown() {
+        this.compressed.delete();
+        this.decompressed.delete();
+    }
+    
+    /**
+     * Compresses the input file.
+     * @throws java.io.IOException 
+     */
+    @Benchmark
+    public void compress() throws IOException {
+        Encoder encoder = new Encoder(CoderType.valueOf(this.coder), SymbolType.TEXT, 0);
+        encoder.compressFile(this.input.getPath(), this.compressed.getPath());
+    }
+    
+    /**
+     * Decompresses the compressed file.
+     * @throws java.io.IOException 
+     */
+    @Benchmark
+    public void decompress() throws IOException {
+        new Decoder().decompressFile(this.compressed.getPath(), this.decompressed.getPath());
+    }
+}
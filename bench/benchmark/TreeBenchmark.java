@@ -0,0 +1,169 @@
+package benchmark;
+
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.ArrayHuffmanTree;
+import huffmanTreeStructure.HuffmanTree;
+import huffmanTreeStructure.VitterHuffmanTree;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the tree operations without any file I/O: coding the first characters of a
+ * corpus with a new tree (encodeCharacter() and addCharacter() for new characters),
+ * adding characters only, and decoding (readHuffmanCode() and
+ * decodeCharacterByNodeNumber()). The bits are written to a stream that discards them
+ * or read from memory.
+ * All results are given per character, so the trees and corpora can be compared
+ * directly. Run with "-prof gc" to see the allocation rate.
+ * @author Raphael Brandis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TreeBenchmark {
+    // the number of characters coded by encode() and decode()
+    private static final int CHARACTERS = 1 << 18;
+    
+    // the number of new characters added by addCharacters()
+    private static final int NEW_CHARACTERS = 4096;
+    
+    /**
+     * The tree implementation: the FGK algorithm on objects or on arrays, or Vitter's
+     * algorithm
+     */
+    @Param({"fgk-objects", "fgk-arrays", "vitter"})
+    public String tree;
+    
+    /**
+     * The corpus (see {@link Corpora})
+     */
+    @Param({"in912k.txt", Corpora.SMALL_ALPHABET, Corpora.HUGE_ALPHABET})
+    public String corpus;
+    
+    private int[] characters;
+    private byte[] encoded;
+    private long encodedBits;
+    
+    /**
+     * Loads the corpus and encodes it once for the decoding benchmark.
+     * @throws java.io.IOException 
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.characters = Corpora.getCharacters(this.corpus);
+        if (this.characters.length < CHARACTERS) {
+            throw new IllegalArgumentException("The corpus " + this.corpus + " is too short");
+        }
+        this.characters = Arrays.copyOf(this.characters, CHARACTERS);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream out = new BitOutputStream(bytes);
+        encode(this.createTree(), this.characters, out);
+        out.close();
+        this.encoded = bytes.toByteArray();
+        this.encodedBits = out.getBitCount();
+    }
+    
+    /**
+     * Encodes the characters with a new tree.
+     * @return the number of bits written
+     * @throws java.io.IOException 
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARACTERS)
+    public long encode() throws IOException {
+        BitOutputStream out = new BitOutputStream(new DiscardingOutputStream());
+        encode(this.createTree(), this.characters, out);
+        return out.getBitCount();
+    }
+    
+    /**
+     * Decodes the characters with a new tree.
+     * @return the sum of the decoded characters
+     * @throws java.io.IOException 
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHARACTERS)
+    public long decode() throws IOException {
+        AdaptiveHuffmanCoder tree = this.createTree();
+        BitInputStream in = new BitInputStream(new ByteArrayInputStream(this.encoded), this.encodedBits);
+        long sum = 0;
+        for (int i = 0; i < this.characters.length; i++) {
+            int number = tree.readHuffmanCode(in);
+            if (number == tree.getNYTNodeNumber()) {
+                int character = (int) in.readBits(21);
+                tree.addCharacter(character);
+                sum += character;
+            } else {
+                sum += tree.decodeCharacterByNodeNumber(number);
+            }
+        }
+        return sum;
+    }
+    
+    /**
+     * Adds new characters to a new tree, which grows the tree and its tables.
+     * @return the NYT node's number
+     */
+    @Benchmark
+    @OperationsPerInvocation(NEW_CHARACTERS)
+    public int addCharacters() {
+        AdaptiveHuffmanCoder tree = this.createTree();
+        for (int i = 0; i < NEW_CHARACTERS; i++) {
+            tree.addCharacter(i);
+        }
+        return tree.getNYTNodeNumber();
+    }
+    
+    private AdaptiveHuffmanCoder createTree() {
+        if (this.tree.equals("fgk-objects")) {
+            return new HuffmanTree();
+        } else if (this.tree.equals("fgk-arrays")) {
+            return new ArrayHuffmanTree();
+        }
+        return new VitterHuffmanTree();
+    }
+    
+    // new characters are sent as 21 bits, which is enough for every code point
+    private static void encode(AdaptiveHuffmanCoder tree, int[] characters, BitOutputStream out) throws IOException {
+        for (int character : characters) {
+            if (tree.characterExists(character)) {
+                tree.encodeCharacter(character, out);
+            } else {
+                tree.encodeNYTNode(out);
+                out.writeBits(character, 21);
+                tree.addCharacter(character);
+            }
+        }
+    }
+    
+    // an OutputStream that throws away everything written to it
+    private static class DiscardingOutputStream extends OutputStream {
+        public void write(int b) {
+        }
+        
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package bitIO;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This class reads single bits from an underlying InputStream or channel that was
+ * written by a {@link BitOutputStream}. The data is read in chunks into a fixed-size
+ * byte buffer, so the memory needed does not depend on the size of the input.
+ * A channel reads into a direct buffer, from which each chunk is copied at once.
+ * Bits that are already in memory can be read directly from their byte array.
+ * As the BitOutputStream pads the last byte with 0-bits, the number of bits that
+ * belong to the data has to be given when the stream is created.
+ * @author Raphael Brandis
+ */
+public class BitInputStream {
+    private static final int BUFFER_SIZE = 8192;
+    
+    private InputStream in;
+    private ReadableByteChannel channel;
+    private ByteBuffer channelBuffer;
+    private byte[] buffer;
+    private int bufferPosition;
+    private int bufferLimit;
+    
+    // bits that have been read from the buffer but not returned yet; the next bit is
+    // the most significant of the lowest bitsInBuffer bits
+    private long bitBuffer;
+    private int bitsInBuffer;
+    private long bitsLeft;
+    
+    /**
+     * Constructor for BitInputStreams
+     * @param in the InputStream the bits should be read from
+     * @param bitCount the number of bits that can be read before the data ends
+     */
+    public BitInputStream(InputStream in, long bitCount) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bitsLeft = bitCount;
+    }
+    
+    /**
+     * Constructor for BitInputStreams reading from a channel, e.g. a FileChannel
+     * positioned at the start of the data
+     * @param channel the channel the bits should be read from
+     * @param bitCount the number of bits that can be read before the data ends
+     */
+    public BitInputStream(ReadableByteChannel channel, long bitCount) {
+        this.channel = channel;
+        this.channelBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bitsLeft = bitCount;
+    }
+    
+    /**
+     * Constructor for BitInputStreams reading from a byte array without copying it
+     * @param bytes the array the bits should be read from
+     * @param offset the position of the first byte in the array
+     * @param bitCount the number of bits that can be read before the data ends (at most
+     * the number of bits in the array behind the offset)
+     */
+    public BitInputStream(byte[] bytes, int offset, long bitCount) {
+        this.buffer = bytes;
+        this.bufferPosition = offset;
+        this.bufferLimit = offset + (int) ((bitCount + 7) / 8);
+        this.bitsLeft = bitCount;
+    }
+    
+    /**
+     * Reads a single bit.
+     * @return 1 or 0, or -1 if the end of the data has been reached
+     * @throws java.io.IOException if the underlying stream ends before the given number of bits was read
+     */
+    public int readBit() throws IOException {
+        if (this.bitsLeft == 0) {
+            return -1;
+        }
+        
+        if (this.bitsInBuffer == 0) {
+            this.bitBuffer = this.readByte();
+            this.bitsInBuffer = 8;
+        }
+        
+        this.bitsLeft--;
+        return (int) (this.bitBuffer >>> --this.bitsInBuffer) & 1;
+    }
+    
+    /**
+     * Reads the given number of bits, the first bit read becoming the most significant one.
+     * @param count the number of bits that should be read (0 to 64)
+     * @return the bits in the lowest bits of a long
+     * @throws java.io.IOException if the data ends before the given number of bits was read
+     * (an EOFException)
+     */
+    public long readBits(int count) throws IOException {
+        if (count > this.bitsLeft) {
+            throw new EOFException("Unexpected end of the compressed data");
+        }
+        this.bitsLeft -= count;
+        
+        long bits = 0;
+        while (count > 0) {
+            if (this.bitsInBuffer == 0) {
+                this.bitBuffer = this.readByte();
+                this.bitsInBuffer = 8;
+            }
+            
+            // take as many bits as possible from the bit buffer
+            int n = Math.min(this.bitsInBuffer, count);
+            count -= n;
+            this.bitsInBuffer -= n;
+            bits = (bits << n) | ((this.bitBuffer >>> this.bitsInBuffer) & ((1L << n) - 1));
+        }
+        return bits;
+    }
+    
+    /**
+     * Returns the next bits without reading them. If fewer bits are left, the missing
+     * bits are returned as 0-bits.
+     * @param count the number of bits (0 to 56)
+     * @return the bits in the lowest bits of a long, the next bit being the most significant one
+     * @throws java.io.IOException 
+     */
+    public long peekBits(int count) throws IOException {
+        while (this.bitsInBuffer < count && this.bitsInBuffer < this.bitsLeft) {
+            this.bitBuffer = (this.bitBuffer << 8) | this.readByte();
+            this.bitsInBuffer += 8;
+        }
+        
+        long mask = (1L << count) - 1;
+        if (this.bitsInBuffer >= count) {
+            return (this.bitBuffer >>> (this.bitsInBuffer - count)) & mask;
+        }
+        return (this.bitBuffer << (count - this.bitsInBuffer)) & mask;
+    }
+    
+    /**
+     * Skips bits that have been looked at using {@link #peekBits(int)}.
+     * @param count the number of bits to skip (at most the number of bits peeked at and left)
+     */
+    public void skipBits(int count) {
+        this.bitsInBuffer -= count;
+        this.bitsLeft -= count;
+    }
+    
+    /**
+     * Returns the number of bits that can still be read.
+     * @return the number of bits left
+     */
+    public long getBitsLeft() {
+        return this.bitsLeft;
+    }
+    
+    /**
+     * Closes the underlying InputStream or channel, if there is one.
+     * @throws java.io.IOException 
+     */
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+        } else if (this.in != null) {
+            this.in.close();
+        }
+    }
+    
+    private int readByte() throws IOException {
+        if (this.bufferPosition == this.bufferLimit) {
+            if (this.channel == null && this.in == null) {
+                throw new EOFException("Unexpected end of the bit stream");
+            }
+            this.bufferLimit = (this.channel != null) ? this.readChannel() : this.in.read(this.buffer, 0, BUFFER_SIZE);
+            this.bufferPosition = 0;
+            if (this.bufferLimit <= 0) {
+                this.bufferLimit = 0;
+                throw new IOException("Unexpected end of the bit stream");
+            }
+        }
+        return this.buffer[this.bufferPosition++] & 0xFF;
+    }
+    
+    // fills the buffer with the next bytes of the channel
+    // returns the number of bytes read or -1 at the end of the channel
+    private int readChannel() throws IOException {
+        this.channelBuffer.clear();
+        int n = this.channel.read(this.channelBuffer);
+        this.channelBuffer.flip();
+        this.channelBuffer.get(this.buffer, 0, this.channelBuffer.remaining());
+        return n;
+    }
+}
@@ -0,0 +1,155 @@
+package bitIO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class writes single bits or short bit sequences to an underlying
+ * OutputStream or channel. The bits are collected in a fixed-size byte buffer which
+ * is flushed whenever it is full, so the memory needed does not depend on the amount
+ * of data written. For a channel, the buffer is copied into a direct buffer at once,
+ * which the channel writes without further copies.
+ * The bits of each byte are written starting with the most significant bit.
+ * When the stream is closed, the last byte is padded with 0-bits, so the number of
+ * bits actually written has to be stored elsewhere (see {@link #getBitCount()}).
+ * @author Raphael Brandis
+ */
+public class BitOutputStream {
+    private static final int BUFFER_SIZE = 8192;
+    
+    private OutputStream out;
+    private WritableByteChannel channel;
+    private ByteBuffer channelBuffer;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPosition;
+    
+    // the byte that is currently being filled and the number of bits already in it
+    private int currentByte;
+    private int bitsInCurrentByte;
+    private long bitCount;
+    
+    /**
+     * Constructor for BitOutputStreams
+     * @param out the OutputStream the bits should be written to
+     */
+    public BitOutputStream(OutputStream out) {
+        this.out = out;
+    }
+    
+    /**
+     * Constructor for BitOutputStreams writing to a channel, e.g. a FileChannel
+     * positioned where the data should start
+     * @param channel the channel the bits should be written to
+     */
+    public BitOutputStream(WritableByteChannel channel) {
+        this.channel = channel;
+        this.channelBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    
+    /**
+     * Writes a single bit.
+     * @param bit the bit that should be written (true = 1, false = 0)
+     * @throws java.io.IOException 
+     */
+    public void writeBit(boolean bit) throws IOException {
+        this.currentByte = (this.currentByte << 1) | (bit ? 1 : 0);
+        this.bitCount++;
+        if (++this.bitsInCurrentByte == 8) {
+            this.writeCurrentByte();
+        }
+    }
+    
+    /**
+     * Writes the lowest bits of the given value, starting with the most significant one.
+     * @param bits the value containing the bits
+     * @param count the number of bits that should be written (0 to 64)
+     * @throws java.io.IOException 
+     */
+    public void writeBits(long bits, int count) throws IOException {
+        this.bitCount += count;
+        
+        while (count > 0) {
+            // fill the current byte with as many bits as possible
+            int n = Math.min(8 - this.bitsInCurrentByte, count);
+            count -= n;
+            this.currentByte = (this.currentByte << n) | (int) ((bits >>> count) & ((1 << n) - 1));
+            this.bitsInCurrentByte += n;
+            
+            if (this.bitsInCurrentByte == 8) {
+                this.writeCurrentByte();
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of bits written so far (without any padding bits).
+     * @return the number of bits written
+     */
+    public long getBitCount() {
+        return this.bitCount;
+    }
+    
+    /**
+     * Writes all completely filled bytes to the underlying OutputStream or channel and
+     * flushes a stream.
+     * @throws java.io.IOException 
+     */
+    public void flush() throws IOException {
+        this.flushBuffer();
+        if (this.out != null) {
+            this.out.flush();
+        }
+    }
+    
+    /**
+     * Pads the current byte with 0-bits, so the next bit starts a new byte. The padding
+     * bits are not counted by {@link #getBitCount()}.
+     * @throws java.io.IOException 
+     */
+    public void padToByte() throws IOException {
+        if (this.bitsInCurrentByte != 0) {
+            this.currentByte <<= 8 - this.bitsInCurrentByte;
+            this.writeCurrentByte();
+        }
+    }
+    
+    /**
+     * Pads the last byte with 0-bits, flushes the remaining data and closes the
+     * underlying OutputStream or channel.
+     * @throws java.io.IOException 
+     */
+    public void close() throws IOException {
+        this.padToByte();
+        this.flushBuffer();
+        if (this.channel != null) {
+            this.channel.close();
+        } else {
+            this.out.close();
+        }
+    }
+    
+    private void writeCurrentByte() throws IOException {
+        if (this.bufferPosition == BUFFER_SIZE) {
+            this.flushBuffer();
+        }
+        this.buffer[this.bufferPosition++] = (byte) this.currentByte;
+        this.currentByte = 0;
+        this.bitsInCurrentByte = 0;
+    }
+    
+    private void flushBuffer() throws IOException {
+        if (this.channel != null) {
+            this.channelBuffer.clear();
+            this.channelBuffer.put(this.buffer, 0, this.bufferPosition);
+            this.channelBuffer.flip();
+            while (this.channelBuffer.hasRemaining()) {
+                this.channel.write(this.channelBuffer);
+            }
+        } else {
+            this.out.write(this.buffer, 0, this.bufferPosition);
+        }
+        this.bufferPosition = 0;
+    }
+}
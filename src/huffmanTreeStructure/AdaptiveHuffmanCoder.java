@@ -0,0 +1,123 @@
+package huffmanTreeStructure;
+
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import java.io.IOException;
+
+/**
+ * This interface describes the operations the {@link main.Encoder} and the
+ * {@link main.Decoder} need from an adaptive Huffman coder. Encoder and decoder have to
+ * use the same implementation, as each of them updates its code in its own way after
+ * every character.
+ * Characters are passed as ints, so they may be any Unicode code point (including
+ * supplementary characters) or byte. A coder does not have to start empty: it can be
+ * created from a snapshot of another coder (see {@link CoderState}).
+ * @author Raphael Brandis
+ */
+public interface AdaptiveHuffmanCoder {
+    /**
+     * Checks if the given character is already known to the coder.
+     * @param character the character to search for
+     * @return true if the character was found, otherwise false
+     */
+    boolean characterExists(int character);
+    
+    /**
+     * Adds a new character with the weight 1 and updates the code.
+     * @param character the character that should be added
+     */
+    void addCharacter(int character);
+    
+    /**
+     * Writes the Huffman code of a known character, increments its weight and
+     * updates the code.
+     * @param character the character to encode
+     * @param out the stream the Huffman code should be written to
+     * @throws java.io.IOException 
+     */
+    void encodeCharacter(int character, BitOutputStream out) throws IOException;
+    
+    /**
+     * Writes the Huffman code of the NYT node, which announces a new character.
+     * @param out the stream the Huffman code should be written to
+     * @throws java.io.IOException 
+     */
+    void encodeNYTNode(BitOutputStream out) throws IOException;
+    
+    /**
+     * Reads one Huffman code from the given stream.
+     * @param in the stream the Huffman code should be read from
+     * @return the number of the leaf the code belongs to or -1 if the stream ended
+     * @throws java.io.IOException 
+     */
+    int readHuffmanCode(BitInputStream in) throws IOException;
+    
+    /**
+     * Returns the node number of the NYT node.
+     * @return the NYT node's number
+     */
+    int getNYTNodeNumber();
+    
+    /**
+     * Takes in a leaf's number, returns the corresponding character, increments its
+     * weight and updates the code.
+     * @param number a leaf's number (usually returned by {@link #readHuffmanCode(BitInputStream)})
+     * @return the decoded character
+     */
+    int decodeCharacterByNodeNumber(int number);
+    
+    /**
+     * Returns the type of the coder, i.e. the algorithm that updates its code.
+     * @return the coder's type
+     */
+    CoderType getCoderType();
+    
+    /**
+     * Sets the root's weight at which the coder halves the weights of all characters
+     * (rounding up) and rebuilds its tree. Afterwards the code depends more on the
+     * recent characters than on the old ones, and the weights cannot overflow. Encoder
+     * and decoder have to use the same limit. By default, the limit is
+     * Integer.MAX_VALUE.
+     * Rebuilding the tree takes O(n log n) time for n characters, so the weights are
+     * only halved once the root's weight is at least four times the number of
+     * characters as well. This keeps the time per character in O(log n) even if the
+     * limit is too low for the alphabet.
+     * @param limit the root's maximum weight (at least 2)
+     */
+    void setRescaleLimit(int limit);
+    
+    /**
+     * Returns the root's weight at which the coder halves the weights of all characters.
+     * @return the root's maximum weight
+     */
+    int getRescaleLimit();
+    
+    /**
+     * Takes a snapshot of the coder's current state. A coder created from it by
+     * {@link CoderType#createCoder(CoderState)} continues exactly like this one.
+     * @return the snapshot, which does not change when this coder does
+     */
+    CoderState getState();
+    
+    /**
+     * Creates a new coder with the same state as this one. This coder is only read, so
+     * several threads may copy the same coder at once as long as it is not used for
+     * coding at the same time.
+     * @return the copy
+     */
+    AdaptiveHuffmanCoder copy();
+    
+    /**
+     * Forgets all characters, so the coder continues like a newly created one with the
+     * default rescale limit. The memory the coder has allocated so far is kept, so a
+     * coder that is reset and reused for many streams does not have to grow again.
+     */
+    void reset();
+    
+    /**
+     * Returns the numbers the coder has counted since it was created or reset, e.g. the
+     * number of symbols and swaps. The coder only counts if {@link CoderMetrics#ENABLED}.
+     * @return the coder's metrics, which change while the coder is used
+     */
+    CoderMetrics getMetrics();
+}
@@ -0,0 +1,545 @@
+package huffmanTreeStructure;
+
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class manages the Huffman tree and performs multiple operations on it. The
+ * subclasses maintain its structure (especially the sibling property) after each
+ * character using an adaptive Huffman coding algorithm.
+ * @author Raphael Brandis
+ * @author Patrick de Lanauze
+ */
+public abstract class AdaptiveHuffmanTree implements AdaptiveHuffmanCoder {
+    protected HuffmanNode root;
+    
+    // UTF-8 has n=1.114.112 possible characters; a Huffman tree with n leaves has n*2-1 nodes in total;
+    // we have to add two nodes because of the NYT node which is also a leaf
+    private final int maxNumberOfCharacters = 1114112;
+    protected final int rootNumber = maxNumberOfCharacters * 2;
+    
+    // the nodes that currently exist have the numbers lastAssignedNodeNumber to rootNumber;
+    // they are stored by their distance to the root's number, so this array only grows
+    // with the number of different characters actually added to the tree
+    private HuffmanNode[] nodes = new HuffmanNode[16];
+    // the leaves of the characters by the ids the LeafMap assigns them in the order
+    // they are added
+    private LeafMap leaves = new LeafMap();
+    private HuffmanLeaf[] leafNodes = new HuffmanLeaf[16];
+    private HuffmanLeaf nytNode;
+    protected int lastAssignedNodeNumber;
+    
+    // pointer used to go through the tree
+    private HuffmanNode currentNode;
+    
+    // the bits of the path from a node up to the root, reused by every call of writePathToNode()
+    private long[] pathBits = new long[1];
+    
+    // lookup table for decoding: for every combination of the next TABLE_BITS bits it
+    // contains the node reached by following them from the root (stopping at leaves) and
+    // the number of bits used; it is created by the first call of readHuffmanCode() and
+    // only rebuilt if the upper TABLE_BITS levels of the tree have changed
+    private static final int TABLE_BITS = 8;
+    private HuffmanNode[] tableNodes;
+    private byte[] tableLengths;
+    private boolean tableIsValid;
+    
+    // the root's weight at which all weights are halved
+    private int rescaleLimit = Integer.MAX_VALUE;
+    
+    // only counts if CoderMetrics.ENABLED
+    private CoderMetrics metrics = new CoderMetrics();
+    
+    /**
+     * This constructor creates an (almost) empty Huffman tree with a NYT node as the
+     * root.
+     */
+    public AdaptiveHuffmanTree() {
+        // create NYT node
+        HuffmanLeaf nytNode = new HuffmanLeaf();
+        // the root node gets the highest possible number
+        lastAssignedNodeNumber = rootNumber;
+        this.setNode(lastAssignedNodeNumber, nytNode);
+        nytNode.setNumber(lastAssignedNodeNumber);
+        this.nytNode = nytNode;
+        this.root = nytNode;
+    }
+    
+    /**
+     * This constructor creates a Huffman tree from a snapshot of another tree.
+     * @param state a snapshot of a tree that uses the same algorithm
+     */
+    public AdaptiveHuffmanTree(CoderState state) {
+        this.load(state);
+    }
+    
+    // replaces all nodes by the ones described by the given snapshot
+    private void load(CoderState state) {
+        int nodeCount = state.getNodeCount();
+        this.lastAssignedNodeNumber = this.rootNumber - (nodeCount - 1);
+        this.nodes = new HuffmanNode[Math.max(16, Integer.highestOneBit(nodeCount + 2) * 2)];
+        this.leaves = new LeafMap();
+        this.leafNodes = new HuffmanLeaf[Math.max(16, Integer.highestOneBit(nodeCount) * 2)];
+        this.tableIsValid = false;
+        this.currentNode = null;
+        
+        // create all nodes first, afterwards the internal nodes can be linked with their children
+        for (int i = 0; i < nodeCount; i++) {
+            HuffmanNode node;
+            if (!state.isLeaf(i)) {
+                node = new InternalHuffmanNode();
+            } else if (i == nodeCount - 1) {
+                node = new HuffmanLeaf();
+            } else {
+                node = new HuffmanLeaf(state.getCharacter(i), null);
+                this.addLeaf((HuffmanLeaf) node);
+            }
+            node.setNumber(this.rootNumber - i);
+            node.setWeight(state.getWeight(i));
+            this.setNode(this.rootNumber - i, node);
+        }
+        
+        for (int i = 0; i < nodeCount; i++) {
+            if (!state.isLeaf(i)) {
+                InternalHuffmanNode node = (InternalHuffmanNode) this.getNode(this.rootNumber - i);
+                HuffmanNode rightChild = this.getNode(this.rootNumber - state.getRightChild(i));
+                HuffmanNode leftChild = this.getNode(this.rootNumber - state.getRightChild(i) - 1);
+                node.setRightChild(rightChild);
+                node.setLeftChild(leftChild);
+                rightChild.setParent(node);
+                leftChild.setParent(node);
+            }
+        }
+        
+        this.root = this.getNode(this.rootNumber);
+        this.nytNode = (HuffmanLeaf) this.getNode(this.lastAssignedNodeNumber);
+        this.createBlocks();
+    }
+    
+    /**
+     * Checks if the given character is already in the tree.
+     * @param character the character to search for
+     * @return true if the character was found, otherwise false
+     */
+    public boolean characterExists(int character) {
+        return this.leaves.get(character) != -1;
+    }
+    
+    /**
+     * Adds a character to the tree and reorganizes the tree
+     * @param character the character that should be added to the tree (its weight will be 1)
+     */
+    public void addCharacter(int character) {
+        HuffmanLeaf nytNode = this.nytNode;
+        if (CoderMetrics.ENABLED) {
+            this.metrics.symbolCount++;
+            this.metrics.escapeCount++;
+        }
+        
+        // NYT node gives birth to a new internal node with the NYT node and the new character's node as children
+        InternalHuffmanNode newInternalNode = new InternalHuffmanNode();
+        HuffmanLeaf characterLeaf = new HuffmanLeaf(character, newInternalNode);
+        
+        newInternalNode.setLeftChild(nytNode);
+        newInternalNode.setRightChild(characterLeaf);
+        
+        if (nytNode.getParent() == null) {
+            // the NYT node was the root node
+            this.root = newInternalNode;
+        } else {
+            // the NYT node is always a leftChild of its parent!
+            nytNode.getParent().setLeftChild(newInternalNode);
+            newInternalNode.setParent(nytNode.getParent());
+        }
+        
+        nytNode.setParent(newInternalNode);
+        this.checkTableValidity(newInternalNode);
+        
+        if (this.rootNumber - this.lastAssignedNodeNumber + 2 >= this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, this.nodes.length * 2);
+        }
+        
+        // now write the created and modified nodes into this.nodes[] and assign the correct numbers
+        this.setNode(this.lastAssignedNodeNumber, newInternalNode);
+        newInternalNode.setNumber(this.lastAssignedNodeNumber);
+        
+        this.setNode(--this.lastAssignedNodeNumber, characterLeaf);
+        characterLeaf.setNumber(this.lastAssignedNodeNumber);
+        
+        // the NYT node always has the lowest number of all nodes
+        this.setNode(--this.lastAssignedNodeNumber, nytNode);
+        nytNode.setNumber(this.lastAssignedNodeNumber);
+        
+        this.addLeaf(characterLeaf);
+        
+        // finally update the weights and reorganize the tree
+        this.increment(characterLeaf);
+    }
+    
+    /**
+     * Takes in a character, computes its Huffman code, increments the weight of the
+     * character's leaf and reorganizes the tree.
+     * @param character the character to encode
+     * @param out the stream the Huffman code should be written to
+     * @throws java.io.IOException 
+     */
+    public void encodeCharacter(int character, BitOutputStream out) throws IOException {
+        HuffmanLeaf leaf = this.leafNodes[this.leaves.get(character)];
+        if (CoderMetrics.ENABLED) {
+            this.metrics.symbolCount++;
+        }
+        this.writePathToNode(leaf, out);
+        this.increment(leaf);
+    }
+    
+    /**
+     * Writes the path from the root to the NYT node.
+     * @param out the stream the Huffman code of the NYT node should be written to
+     * @throws java.io.IOException 
+     */
+    public void encodeNYTNode(BitOutputStream out) throws IOException {
+        HuffmanNode nytNode = this.getNode(this.lastAssignedNodeNumber);
+        this.writePathToNode(nytNode, out);
+    }
+    
+    /**
+     * Reads bits from the given stream and follows them from the root down to a leaf.
+     * If the tree consists of the NYT node only, no bits are read at all.
+     * @param in the stream the Huffman code should be read from
+     * @return the number of the leaf that was reached or -1 if the stream ended
+     * @throws java.io.IOException 
+     */
+    public int readHuffmanCode(BitInputStream in) throws IOException {
+        if (this.root instanceof HuffmanLeaf) {
+            return this.root.getNumber();
+        }
+        
+        if (!this.tableIsValid) {
+            this.buildTable();
+        }
+        
+        // look up the first TABLE_BITS bits of the code at once
+        int index = (int) in.peekBits(TABLE_BITS);
+        int length = this.tableLengths[index];
+        if (length > in.getBitsLeft()) {
+            return -1;
+        }
+        in.skipBits(length);
+        HuffmanNode node = this.tableNodes[index];
+        
+        // codes that are longer than TABLE_BITS bits are continued bit by bit
+        while (node instanceof InternalHuffmanNode) {
+            int bit = in.readBit();
+            if (bit == -1) {
+                return -1;
+            }
+            node = (bit == 1) ? node.getRightChild() : node.getLeftChild();
+            length++;
+        }
+        
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addCode(length);
+        }
+        return node.getNumber();
+    }
+    
+    /**
+     * Reads one bit and moves the internal node pointer to the left (if the given bit
+     * is 0 / false) or to the right child (if the bit is 1 / true) of the node the
+     * pointer currently points at. If it reaches a leaf, its node number is returned
+     * and the pointer is resetted.
+     * @param bit one Huffman code bit in boolean form
+     * @return if a leaf is reached: its number, if not: -1
+     */
+    public int readHuffmanCodeBit(boolean bit) {
+        int decodedCharacter = -1;
+        
+        if (this.currentNode == null) {
+            // begin decoding a new character starting from the root node
+            this.currentNode = this.root;
+        }
+        
+        if (bit) {
+            this.currentNode = this.currentNode.getRightChild();
+        } else {
+            this.currentNode = this.currentNode.getLeftChild();
+        }
+        
+        if (this.currentNode instanceof HuffmanLeaf) {
+            // we reached a leaf, return its number
+            decodedCharacter = this.currentNode.getNumber();
+            this.currentNode = null;
+        }
+        
+        return decodedCharacter;
+    }
+    
+    /**
+     * Returns the node number of the NYT node.
+     * @return the NYT node's number
+     */
+    public int getNYTNodeNumber() {
+        return this.lastAssignedNodeNumber;
+    }
+    
+    /**
+     * Takes in a node number, returns the corresponding character, increments the
+     * weight of the character's leaf and reorganizes the tree.
+     * @param number a node number (pointing to a leaf, usually returned by {@link #readHuffmanCode(BitInputStream)})
+     * @return the decoded character
+     */
+    public int decodeCharacterByNodeNumber(int number) {
+        int decodedCharacter = this.getNode(number).getValue();
+        if (CoderMetrics.ENABLED) {
+            this.metrics.symbolCount++;
+        }
+        this.increment(this.getNode(number));
+        return decodedCharacter;
+    }
+    
+    /**
+     * Sets the root's weight at which the weights of all characters are halved and the
+     * tree is rebuilt (see {@link AdaptiveHuffmanCoder#setRescaleLimit(int)}).
+     * @param limit the root's maximum weight (at least 2)
+     */
+    public void setRescaleLimit(int limit) {
+        if (limit < 2) {
+            throw new IllegalArgumentException("Invalid rescale limit: " + limit);
+        }
+        this.rescaleLimit = limit;
+    }
+    
+    /**
+     * Returns the root's weight at which the weights of all characters are halved.
+     * @return the root's maximum weight
+     */
+    public int getRescaleLimit() {
+        return this.rescaleLimit;
+    }
+    
+    /**
+     * Takes a snapshot of the tree's current state.
+     * @return the snapshot
+     */
+    public CoderState getState() {
+        int nodeCount = this.rootNumber - this.lastAssignedNodeNumber + 1;
+        int[] rightChildren = new int[nodeCount];
+        int[] characters = new int[nodeCount];
+        int[] weights = new int[nodeCount];
+        
+        for (int i = 0; i < nodeCount; i++) {
+            HuffmanNode node = this.getNode(this.rootNumber - i);
+            if (node instanceof InternalHuffmanNode) {
+                rightChildren[i] = this.rootNumber - node.getRightChild().getNumber();
+            } else if (node != this.nytNode) {
+                characters[i] = node.getValue();
+            }
+            weights[i] = node.getWeight();
+        }
+        return new CoderState(this.getCoderType(), rightChildren, characters, weights);
+    }
+    
+    /**
+     * Returns the numbers the tree has counted since it was created or reset.
+     * @return the tree's metrics (only counted if {@link CoderMetrics#ENABLED})
+     */
+    public CoderMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * Removes all characters from the tree, leaving a new NYT node as the root, and
+     * resets the rescale limit. The node array and the leaf map keep their size.
+     */
+    public void reset() {
+        Arrays.fill(this.nodes, 0, this.rootNumber - this.lastAssignedNodeNumber + 1, null);
+        this.leaves.clear();
+        Arrays.fill(this.leafNodes, null);
+        this.tableIsValid = false;
+        this.currentNode = null;
+        this.rescaleLimit = Integer.MAX_VALUE;
+        this.metrics.clear();
+        
+        HuffmanLeaf nytNode = new HuffmanLeaf();
+        this.lastAssignedNodeNumber = this.rootNumber;
+        this.setNode(this.lastAssignedNodeNumber, nytNode);
+        nytNode.setNumber(this.lastAssignedNodeNumber);
+        this.nytNode = nytNode;
+        this.root = nytNode;
+        this.createBlocks();
+    }
+    
+    /**
+     * Prints a String representation of the tree to the console output.
+     */
+    public void printKeysTreeOrder() {
+        this.root.printKeysTreeOrder(System.out, "");
+    }
+    
+    /**
+     * Increments the weight of the given leaf and of all of its ancestors by 1 and
+     * reorganizes the tree so that the sibling property holds again. Leaves of new
+     * characters are passed with the weight 0.
+     * @param leaf the leaf whose weight should be incremented
+     */
+    protected abstract void update(HuffmanNode leaf);
+    
+    /**
+     * Returns the NYT node.
+     * @return the NYT node
+     */
+    protected HuffmanNode getNYTNode() {
+        return this.nytNode;
+    }
+    
+    /**
+     * Puts the nodes into blocks after the tree has been created from a snapshot or
+     * rebuilt (see {@link #putIntoBlocks(boolean)}).
+     */
+    protected abstract void createBlocks();
+    
+    /**
+     * Puts the nodes into blocks: every run of consecutive nodes with the same weight
+     * forms a block.
+     * @param leavesSeparately true if the leaves and the internal nodes of the same
+     * weight form blocks of their own
+     */
+    protected void putIntoBlocks(boolean leavesSeparately) {
+        Block block = null;
+        HuffmanNode previousNode = null;
+        for (int number = this.rootNumber; number >= this.lastAssignedNodeNumber; number--) {
+            HuffmanNode node = this.getNode(number);
+            if (previousNode == null || node.getWeight() != previousNode.getWeight()
+                    || (leavesSeparately && (node instanceof HuffmanLeaf) != (previousNode instanceof HuffmanLeaf))) {
+                block = new Block(number);
+            }
+            node.setBlock(block);
+            previousNode = node;
+        }
+    }
+    
+    /**
+     * Swaps two nodes including their subtrees and exchanges their numbers.
+     * @param node a node
+     * @param otherNode another node that is neither an ancestor nor a descendant of the first one
+     */
+    protected void swap(HuffmanNode node, HuffmanNode otherNode) {
+        if (CoderMetrics.ENABLED) {
+            this.metrics.swapCount++;
+        }
+        this.checkTableValidity(node);
+        this.checkTableValidity(otherNode);
+        node.swapWith(otherNode);
+        
+        int nodeNumber = node.getNumber();
+        node.setNumber(otherNode.getNumber());
+        this.setNode(otherNode.getNumber(), node);
+        otherNode.setNumber(nodeNumber);
+        this.setNode(nodeNumber, otherNode);
+    }
+    
+    // updates the tree for the given leaf and halves all weights once the root's weight
+    // has reached the limit (and four times the number of characters)
+    private void increment(HuffmanNode leaf) {
+        this.update(leaf);
+        int weight = this.root.getWeight();
+        if (weight >= this.rescaleLimit && weight / 4 >= this.leaves.size()) {
+            this.load(this.getState().halveWeights());
+        }
+    }
+    
+    // adds the leaf of a new character to the LeafMap
+    private void addLeaf(HuffmanLeaf leaf) {
+        int id = this.leaves.size();
+        if (id == this.leafNodes.length) {
+            this.leafNodes = Arrays.copyOf(this.leafNodes, id * 2);
+        }
+        this.leafNodes[id] = leaf;
+        this.leaves.put(leaf.getValue(), id);
+    }
+    
+    // invalidates the decoding table if the given node is about to be moved or replaced
+    // and is one of the nodes the table points to or passes
+    private void checkTableValidity(HuffmanNode node) {
+        if (!this.tableIsValid) {
+            return;
+        }
+        
+        // only nodes in the upper TABLE_BITS levels of the tree are relevant
+        for (int depth = 0; depth <= TABLE_BITS; depth++) {
+            if (node.getParent() == null) {
+                this.tableIsValid = false;
+                return;
+            }
+            node = node.getParent();
+        }
+    }
+    
+    // fills the decoding table with the nodes reached by all combinations of TABLE_BITS bits
+    private void buildTable() {
+        if (this.tableNodes == null) {
+            this.tableNodes = new HuffmanNode[1 << TABLE_BITS];
+            this.tableLengths = new byte[1 << TABLE_BITS];
+        }
+        this.fillTable(this.root, 0, 0);
+        this.tableIsValid = true;
+    }
+    
+    private void fillTable(HuffmanNode node, int code, int length) {
+        if (node instanceof InternalHuffmanNode && length < TABLE_BITS) {
+            this.fillTable(node.getLeftChild(), code << 1, length + 1);
+            this.fillTable(node.getRightChild(), (code << 1) | 1, length + 1);
+            return;
+        }
+        
+        // all entries starting with the node's code belong to the node
+        int first = code << (TABLE_BITS - length);
+        int last = first + (1 << (TABLE_BITS - length));
+        for (int i = first; i < last; i++) {
+            this.tableNodes[i] = node;
+            this.tableLengths[i] = (byte) length;
+        }
+    }
+    
+    // based on Patrick de Lanauze's registerPathToNode() (see his implementation of the static algorithm)
+    // writes the path from the root to the given node to the given stream; the path is
+    // collected from the bottom up first, so the bits next to the root are the highest ones
+    private void writePathToNode(HuffmanNode node, BitOutputStream out) throws IOException {
+        int depth = 0;
+        for (; node.getParent() != null; node = node.getParent()) {
+            if (depth == this.pathBits.length * 64) {
+                this.pathBits = Arrays.copyOf(this.pathBits, this.pathBits.length * 2);
+            }
+            // a left branch is logged as a 0, a right branch as a 1
+            if (node != node.getParent().getLeftChild()) {
+                this.pathBits[depth >>> 6] |= 1L << (depth & 63);
+            } else {
+                this.pathBits[depth >>> 6] &= ~(1L << (depth & 63));
+            }
+            depth++;
+        }
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addCode(depth);
+        }
+        
+        for (int word = (depth - 1) >>> 6; depth > 0 && word >= 0; word--) {
+            out.writeBits(this.pathBits[word], Math.min(64, depth - 64 * word));
+        }
+    }
+    
+    /**
+     * Returns the node with the given number.
+     * @param number a number between the NYT node's and the root's number
+     * @return the node
+     */
+    protected HuffmanNode getNode(int number) {
+        return this.nodes[this.rootNumber - number];
+    }
+    
+    // stores the node with the given number
+    private void setNode(int number, HuffmanNode node) {
+        this.nodes[this.rootNumber - number] = node;
+    }
+}
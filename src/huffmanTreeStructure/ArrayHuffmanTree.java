@@ -0,0 +1,508 @@
+package huffmanTreeStructure;
+
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class implements the FGK algorithm like {@link HuffmanTree}, but stores the
+ * tree in parallel int arrays instead of a graph of node objects. It produces exactly
+ * the same codes as {@link HuffmanTree}, so both can decode each other's output;
+ * {@link CoderType#FGK} creates ArrayHuffmanTrees if {@link CoderType#FGK_ARRAYS}.
+ * The nodes are identified by their position: the root has the position 0 and the
+ * positions increase in the opposite direction of the node numbers used by the other
+ * trees, so the NYT node always has the highest position. All arrays are indexed by
+ * position:
+ * <PRE>
+ * weight   the node's weight
+ * parent   the position of the node's parent (the root's is 0)
+ * child    for internal nodes: the position of the right child, the left child
+ *          (sibling property!) is the next one; for leaves: -1 - the leaf's id
+ * block    the id of the node's block of nodes with the same weight
+ * </PRE>
+ * Swapping two nodes only exchanges their child entries and fixes the parent entries
+ * of their children, as a position's parent never changes. The leaves' ids are
+ * assigned in the order the characters are added; the id 0 belongs to the NYT node.
+ * @author Raphael Brandis
+ */
+public class ArrayHuffmanTree implements AdaptiveHuffmanCoder {
+    private static final int NYT_ID = 0;
+    
+    // the nodes
+    private int[] weight = new int[16];
+    private int[] parent = new int[16];
+    private int[] child = new int[16];
+    private int[] block = new int[16];
+    private int nodeCount = 1;
+    
+    // the leader of each block and the ids of blocks that became empty
+    private int[] leader = new int[16];
+    private int blockCount = 1;
+    private int[] freeBlocks = new int[16];
+    private int freeBlockCount;
+    
+    // the leaves: their characters and positions by id
+    private int[] characters = new int[16];
+    private int[] leafPosition = new int[16];
+    private int leafCount = 1;
+    
+    // maps the characters to their leaves' ids
+    private LeafMap leaves = new LeafMap();
+    
+    // the bits of the path from a leaf up to the root, reused by every call of encode()
+    private long[] pathBits = new long[1];
+    
+    // the root's weight at which all weights are halved
+    private int rescaleLimit = Integer.MAX_VALUE;
+    
+    // only counts if CoderMetrics.ENABLED
+    private CoderMetrics metrics = new CoderMetrics();
+    
+    /**
+     * This constructor creates an (almost) empty Huffman tree with a NYT node as the
+     * root.
+     */
+    public ArrayHuffmanTree() {
+        this.child[0] = -1 - NYT_ID;
+    }
+    
+    /**
+     * This constructor creates a Huffman tree from a snapshot of another FGK tree (an
+     * ArrayHuffmanTree or a {@link HuffmanTree}).
+     * @param state the snapshot
+     */
+    public ArrayHuffmanTree(CoderState state) {
+        this.load(state);
+    }
+    
+    // replaces all nodes by the ones described by the given snapshot
+    private void load(CoderState state) {
+        int nodeCount = state.getNodeCount();
+        int capacity = Math.max(16, Integer.highestOneBit(nodeCount) * 2);
+        this.weight = new int[capacity];
+        this.parent = new int[capacity];
+        this.child = new int[capacity];
+        this.block = new int[capacity];
+        this.leader = new int[capacity];
+        this.blockCount = 0;
+        this.freeBlockCount = 0;
+        this.leafCount = 1;
+        this.leaves = new LeafMap();
+        
+        for (int i = 0; i < nodeCount; i++) {
+            this.weight[i] = state.getWeight(i);
+            if (!state.isLeaf(i)) {
+                this.setChild(i, state.getRightChild(i));
+            } else if (i == nodeCount - 1) {
+                this.setChild(i, -1 - NYT_ID);
+            } else {
+                this.setChild(i, -1 - this.addLeaf(state.getCharacter(i)));
+            }
+            
+            // every run of nodes with the same weight forms a block
+            if (i == 0 || this.weight[i] != this.weight[i - 1]) {
+                this.leader[this.blockCount++] = i;
+            }
+            this.block[i] = this.blockCount - 1;
+        }
+        this.nodeCount = nodeCount;
+    }
+    
+    // creates a copy of the given tree by copying its arrays
+    private ArrayHuffmanTree(ArrayHuffmanTree tree) {
+        this.weight = tree.weight.clone();
+        this.parent = tree.parent.clone();
+        this.child = tree.child.clone();
+        this.block = tree.block.clone();
+        this.nodeCount = tree.nodeCount;
+        this.leader = tree.leader.clone();
+        this.blockCount = tree.blockCount;
+        this.freeBlocks = tree.freeBlocks.clone();
+        this.freeBlockCount = tree.freeBlockCount;
+        this.characters = tree.characters.clone();
+        this.leafPosition = tree.leafPosition.clone();
+        this.leafCount = tree.leafCount;
+        this.leaves = new LeafMap(tree.leaves);
+        this.rescaleLimit = tree.rescaleLimit;
+    }
+    
+    /**
+     * Checks if the given character is already in the tree.
+     * @param character the character to search for
+     * @return true if the character was found, otherwise false
+     */
+    public boolean characterExists(int character) {
+        return this.leaves.get(character) != -1;
+    }
+    
+    /**
+     * Adds a character to the tree and reorganizes the tree
+     * @param character the character that should be added to the tree (its weight will be 1)
+     */
+    public void addCharacter(int character) {
+        if (this.nodeCount + 2 > this.weight.length) {
+            int capacity = this.weight.length * 2;
+            this.weight = Arrays.copyOf(this.weight, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.child = Arrays.copyOf(this.child, capacity);
+            this.block = Arrays.copyOf(this.block, capacity);
+        }
+        int id = this.addLeaf(character);
+        if (CoderMetrics.ENABLED) {
+            this.metrics.symbolCount++;
+            this.metrics.escapeCount++;
+        }
+        
+        // the NYT node becomes an internal node with the new leaf as its right and the NYT
+        // node as its left child; all three have the weight 0 and belong to the NYT
+        // node's block, whose leader is still the position of the former NYT node
+        int internalNode = this.nodeCount - 1;
+        int leaf = internalNode + 1;
+        int nytNode = internalNode + 2;
+        this.child[internalNode] = leaf;
+        this.setLeaf(leaf, id, internalNode);
+        this.setLeaf(nytNode, NYT_ID, internalNode);
+        this.nodeCount += 2;
+        
+        // finally update the weights and reorganize the tree
+        this.increment(leaf);
+    }
+    
+    /**
+     * Takes in a character, computes its Huffman code, increments the weight of the
+     * character's leaf and reorganizes the tree.
+     * @param character the character to encode
+     * @param out the stream the Huffman code should be written to
+     * @throws java.io.IOException 
+     */
+    public void encodeCharacter(int character, BitOutputStream out) throws IOException {
+        int leaf = this.leafPosition[this.leaves.get(character)];
+        if (CoderMetrics.ENABLED) {
+            this.metrics.symbolCount++;
+        }
+        this.writePathToNode(leaf, out);
+        this.increment(leaf);
+    }
+    
+    /**
+     * Writes the path from the root to the NYT node.
+     * @param out the stream the Huffman code of the NYT node should be written to
+     * @throws java.io.IOException 
+     */
+    public void encodeNYTNode(BitOutputStream out) throws IOException {
+        this.writePathToNode(this.nodeCount - 1, out);
+    }
+    
+    /**
+     * Reads bits from the given stream and follows them from the root down to a leaf.
+     * If the tree consists of the NYT node only, no bits are read at all.
+     * @param in the stream the Huffman code should be read from
+     * @return the position of the leaf that was reached or -1 if the stream ended
+     * @throws java.io.IOException 
+     */
+    public int readHuffmanCode(BitInputStream in) throws IOException {
+        int node = 0;
+        int codeLength = 0;
+        while (this.child[node] > 0) {
+            // follow up to 8 bits at once without calling the stream for every bit
+            int bits = (int) in.peekBits(8);
+            int bitCount = 0;
+            while (bitCount < 8 && this.child[node] > 0) {
+                int bit = (bits >>> (7 - bitCount)) & 1;
+                node = (bit == 1) ? this.child[node] : this.child[node] + 1;
+                bitCount++;
+            }
+            
+            if (bitCount > in.getBitsLeft()) {
+                return -1;
+            }
+            in.skipBits(bitCount);
+            codeLength += bitCount;
+        }
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addCode(codeLength);
+        }
+        return node;
+    }
+    
+    /**
+     * Returns the position of the NYT node.
+     * @return the NYT node's position
+     */
+    public int getNYTNodeNumber() {
+        return this.nodeCount - 1;
+    }
+    
+    /**
+     * Takes in a leaf's position, returns the corresponding character, increments the
+     * weight of the character's leaf and reorganizes the tree.
+     * @param number a leaf's position (usually returned by {@link #readHuffmanCode(BitInputStream)})
+     * @return the decoded character
+     */
+    public int decodeCharacterByNodeNumber(int number) {
+        int decodedCharacter = this.characters[-1 - this.child[number]];
+        if (CoderMetrics.ENABLED) {
+            this.metrics.symbolCount++;
+        }
+        this.increment(number);
+        return decodedCharacter;
+    }
+    
+    /**
+     * Sets the root's weight at which the weights of all characters are halved and the
+     * tree is rebuilt (see {@link AdaptiveHuffmanCoder#setRescaleLimit(int)}).
+     * @param limit the root's maximum weight (at least 2)
+     */
+    public void setRescaleLimit(int limit) {
+        if (limit < 2) {
+            throw new IllegalArgumentException("Invalid rescale limit: " + limit);
+        }
+        this.rescaleLimit = limit;
+    }
+    
+    /**
+     * Returns the root's weight at which the weights of all characters are halved.
+     * @return the root's maximum weight
+     */
+    public int getRescaleLimit() {
+        return this.rescaleLimit;
+    }
+    
+    /**
+     * Returns the type of the coder.
+     * @return {@link CoderType#FGK}
+     */
+    public CoderType getCoderType() {
+        return CoderType.FGK;
+    }
+    
+    /**
+     * Takes a snapshot of the tree's current state.
+     * @return the snapshot
+     */
+    public CoderState getState() {
+        int[] rightChildren = new int[this.nodeCount];
+        int[] leafCharacters = new int[this.nodeCount];
+        for (int i = 0; i < this.nodeCount; i++) {
+            if (this.child[i] > 0) {
+                rightChildren[i] = this.child[i];
+            } else {
+                leafCharacters[i] = this.characters[-1 - this.child[i]];
+            }
+        }
+        return new CoderState(CoderType.FGK, rightChildren, leafCharacters, Arrays.copyOf(this.weight, this.nodeCount));
+    }
+    
+    /**
+     * Creates a new tree with the same state as this one by copying the arrays, which
+     * is faster than creating it from a snapshot.
+     * @return the copy
+     */
+    public AdaptiveHuffmanCoder copy() {
+        return new ArrayHuffmanTree(this);
+    }
+    
+    /**
+     * Returns the numbers the tree has counted since it was created or reset.
+     * @return the tree's metrics (only counted if {@link CoderMetrics#ENABLED})
+     */
+    public CoderMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * Removes all characters from the tree, leaving the NYT node as the root, and resets
+     * the rescale limit. The arrays keep their size.
+     */
+    public void reset() {
+        this.weight[0] = 0;
+        this.parent[0] = 0;
+        this.child[0] = -1 - NYT_ID;
+        this.block[0] = 0;
+        this.nodeCount = 1;
+        this.leader[0] = 0;
+        this.blockCount = 1;
+        this.freeBlockCount = 0;
+        this.leafCount = 1;
+        this.leaves.clear();
+        this.rescaleLimit = Integer.MAX_VALUE;
+        this.metrics.clear();
+    }
+    
+    // updates the tree for the given leaf and halves all weights once the root's weight
+    // has reached the limit (and four times the number of characters)
+    private void increment(int leaf) {
+        this.update(leaf);
+        if (this.weight[0] >= this.rescaleLimit && this.weight[0] / 4 >= this.leafCount - 1) {
+            this.load(this.getState().halveWeights());
+        }
+    }
+    
+    // increments the weight of the given leaf and of all of its ancestors by 1 and
+    // reorganizes the tree using the FGK algorithm (see HuffmanTree.update())
+    private void update(int leaf) {
+        int parentNode = this.parent[leaf];
+        if (leaf != 0 && this.child[parentNode] + 1 == this.nodeCount - 1) {
+            // the leaf is the NYT node's sibling: its parent has the same weight as the
+            // leaf but cannot be swapped with it; all other nodes with this weight are
+            // leaves, so the highest of them is either the leader of the block or the
+            // node right below the parent
+            int highestLeaf = this.leader[this.block[leaf]];
+            if (highestLeaf == parentNode) {
+                highestLeaf++;
+            }
+            
+            if (highestLeaf == leaf) {
+                // the leaf and its parent are the only nodes with this weight: increment the
+                // parent first, afterwards the leaf is the leader of its block
+                this.incrementWeight(parentNode);
+                this.moveToNextBlock(leaf);
+                this.weight[leaf]++;
+                if (CoderMetrics.ENABLED) {
+                    this.metrics.updatedNodeCount++;
+                }
+                return;
+            }
+            this.swap(leaf, highestLeaf);
+            leaf = highestLeaf;
+        }
+        this.incrementWeight(leaf);
+    }
+    
+    // increments the weight of the given node and of all of its ancestors by 1
+    private void incrementWeight(int node) {
+        while (true) {
+            // move the node to the position of the leader of its block first
+            int blockLeader = this.leader[this.block[node]];
+            if (blockLeader != node) {
+                this.swap(node, blockLeader);
+                node = blockLeader;
+            }
+            
+            this.moveToNextBlock(node);
+            this.weight[node]++;
+            if (CoderMetrics.ENABLED) {
+                this.metrics.updatedNodeCount++;
+            }
+            if (node == 0) {
+                return;
+            }
+            node = this.parent[node];
+        }
+    }
+    
+    // removes the given leader from its block and adds it to the block of the nodes
+    // with the next higher weight (the node's weight is not changed here)
+    private void moveToNextBlock(int node) {
+        int oldBlock = this.block[node];
+        
+        boolean blockIsEmpty = true;
+        if (node < this.nodeCount - 1 && this.block[node + 1] == oldBlock) {
+            // the next node below becomes the leader
+            this.leader[oldBlock] = node + 1;
+            blockIsEmpty = false;
+        }
+        
+        if (node > 0 && this.weight[node - 1] == this.weight[node] + 1) {
+            // the node becomes the lowest node of the block above
+            this.block[node] = this.block[node - 1];
+            if (blockIsEmpty) {
+                this.freeBlock(oldBlock);
+            }
+        } else if (blockIsEmpty) {
+            // the node forms a new block on its own, reuse the old one
+            this.leader[oldBlock] = node;
+        } else {
+            this.block[node] = this.newBlock(node);
+        }
+    }
+    
+    // exchanges the nodes (including their subtrees) at the given positions, which
+    // belong to the same block
+    private void swap(int node, int otherNode) {
+        if (CoderMetrics.ENABLED) {
+            this.metrics.swapCount++;
+        }
+        int nodeChild = this.child[node];
+        this.setChild(node, this.child[otherNode]);
+        this.setChild(otherNode, nodeChild);
+    }
+    
+    // puts a node with the given child entry at the given position
+    private void setChild(int node, int nodeChild) {
+        this.child[node] = nodeChild;
+        if (nodeChild > 0) {
+            this.parent[nodeChild] = node;
+            this.parent[nodeChild + 1] = node;
+        } else {
+            this.leafPosition[-1 - nodeChild] = node;
+        }
+    }
+    
+    private void setLeaf(int node, int id, int parentNode) {
+        this.weight[node] = 0;
+        this.parent[node] = parentNode;
+        this.child[node] = -1 - id;
+        this.block[node] = this.block[parentNode];
+        this.leafPosition[id] = node;
+    }
+    
+    // writes the path from the root to the given node, collecting it from the bottom up first
+    private void writePathToNode(int node, BitOutputStream out) throws IOException {
+        int depth = 0;
+        for (; node != 0; node = this.parent[node]) {
+            if (depth == this.pathBits.length * 64) {
+                this.pathBits = Arrays.copyOf(this.pathBits, this.pathBits.length * 2);
+            }
+            // the right child means 1, the left one 0
+            if (this.child[this.parent[node]] == node) {
+                this.pathBits[depth >>> 6] |= 1L << (depth & 63);
+            } else {
+                this.pathBits[depth >>> 6] &= ~(1L << (depth & 63));
+            }
+            depth++;
+        }
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addCode(depth);
+        }
+        
+        // the bits next to the root are the highest ones
+        for (int word = (depth - 1) >>> 6; depth > 0 && word >= 0; word--) {
+            out.writeBits(this.pathBits[word], Math.min(64, depth - 64 * word));
+        }
+    }
+    
+    private int newBlock(int blockLeader) {
+        int id;
+        if (this.freeBlockCount > 0) {
+            id = this.freeBlocks[--this.freeBlockCount];
+        } else {
+            if (this.blockCount == this.leader.length) {
+                this.leader = Arrays.copyOf(this.leader, this.leader.length * 2);
+            }
+            id = this.blockCount++;
+        }
+        this.leader[id] = blockLeader;
+        return id;
+    }
+    
+    private void freeBlock(int id) {
+        if (this.freeBlockCount == this.freeBlocks.length) {
+            this.freeBlocks = Arrays.copyOf(this.freeBlocks, this.freeBlocks.length * 2);
+        }
+        this.freeBlocks[this.freeBlockCount++] = id;
+    }
+    
+    // assigns the next id to a new character and returns it
+    private int addLeaf(int character) {
+        int id = this.leafCount++;
+        if (id == this.characters.length) {
+            this.characters = Arrays.copyOf(this.characters, id * 2);
+            this.leafPosition = Arrays.copyOf(this.leafPosition, id * 2);
+        }
+        this.characters[id] = character;
+        this.leaves.put(character, id);
+        return id;
+    }
+}
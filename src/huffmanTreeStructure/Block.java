@@ -0,0 +1,37 @@
+package huffmanTreeStructure;
+
+/**
+ * A block contains all nodes of a Huffman tree that have the same weight. Because of
+ * the sibling property, these nodes have consecutive numbers, so a block only has to
+ * know its leader, i.e. the node with the highest number. Every {@link HuffmanNode}
+ * references its block, which allows the {@link HuffmanTree} to find the leader of a
+ * node's block in constant time.
+ * @author Raphael Brandis
+ */
+public class Block {
+    private int leader;
+    
+    /**
+     * Constructor for Blocks
+     * @param leader the number of the block's leader
+     */
+    public Block(int leader) {
+        this.leader = leader;
+    }
+    
+    /**
+     * Returns the number of the node with the highest number in this block.
+     * @return the leader's number
+     */
+    public int getLeader() {
+        return this.leader;
+    }
+    
+    /**
+     * Sets the number of the node with the highest number in this block.
+     * @param leader the new leader's number
+     */
+    public void setLeader(int leader) {
+        this.leader = leader;
+    }
+}
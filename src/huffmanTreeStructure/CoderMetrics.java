@@ -0,0 +1,109 @@
+package huffmanTreeStructure;
+
+/**
+ * This class counts what an adaptive Huffman coder does: the symbols it codes, the new
+ * symbols escaped through the NYT node, the nodes it swaps and updates and the length
+ * of its codes. These numbers explain why some inputs are coded slower than others.
+ * The coders only count if the system property "huffman.metrics" is "true" (see
+ * {@link #ENABLED}). The flag is a constant, so otherwise the just-in-time compiler
+ * removes the counting from the coders completely.
+ * @author Raphael Brandis
+ */
+public class CoderMetrics {
+    /**
+     * Whether the coders count, read once from the system property "huffman.metrics"
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("huffman.metrics");
+    
+    long symbolCount;
+    long escapeCount;
+    long swapCount;
+    long updatedNodeCount;
+    long codeBitCount;
+    int maxCodeLength;
+    
+    /**
+     * Returns the number of symbols that have been encoded or decoded, including the new ones.
+     * @return the number of symbols
+     */
+    public long getSymbolCount() {
+        return this.symbolCount;
+    }
+    
+    /**
+     * Returns the number of new symbols, each of which has been escaped by the code of
+     * the NYT node.
+     * @return the number of NYT escapes
+     */
+    public long getEscapeCount() {
+        return this.escapeCount;
+    }
+    
+    /**
+     * Returns the number of times two nodes have been swapped to keep the sibling property.
+     * @return the number of swaps
+     */
+    public long getSwapCount() {
+        return this.swapCount;
+    }
+    
+    /**
+     * Returns the number of nodes whose weight has been incremented, i.e. the total
+     * length of the paths the coder has updated.
+     * @return the number of updated nodes
+     */
+    public long getUpdatedNodeCount() {
+        return this.updatedNodeCount;
+    }
+    
+    /**
+     * Returns the number of bits of all Huffman codes that have been written or read,
+     * including the codes of the NYT node, but not the new symbols following them.
+     * @return the number of code bits
+     */
+    public long getCodeBitCount() {
+        return this.codeBitCount;
+    }
+    
+    /**
+     * Returns the length of the longest code that has been written or read, i.e. the
+     * depth of the deepest leaf that has been coded.
+     * @return the maximum code length in bits
+     */
+    public int getMaxCodeLength() {
+        return this.maxCodeLength;
+    }
+    
+    /**
+     * Adds the numbers of another coder to this one's.
+     * @param metrics the other coder's metrics
+     */
+    public void add(CoderMetrics metrics) {
+        this.symbolCount += metrics.symbolCount;
+        this.escapeCount += metrics.escapeCount;
+        this.swapCount += metrics.swapCount;
+        this.updatedNodeCount += metrics.updatedNodeCount;
+        this.codeBitCount += metrics.codeBitCount;
+        this.maxCodeLength = Math.max(this.maxCodeLength, metrics.maxCodeLength);
+    }
+    
+    /**
+     * Sets all numbers to 0.
+     */
+    public void clear() {
+        this.symbolCount = 0;
+        this.escapeCount = 0;
+        this.swapCount = 0;
+        this.updatedNodeCount = 0;
+        this.codeBitCount = 0;
+        this.maxCodeLength = 0;
+    }
+    
+    // counts a code of the given length
+    void addCode(int length) {
+        this.codeBitCount += length;
+        if (length > this.maxCodeLength) {
+            this.maxCodeLength = length;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package huffmanTreeStructure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class is a snapshot of an adaptive Huffman coder: the shape of its tree, the
+ * characters of the leaves and their weights. A coder created from a snapshot (see
+ * {@link CoderType#createCoder(CoderState)}) continues exactly like the coder the
+ * snapshot was taken of, so it can be used to prime encoder and decoder with a
+ * pre-trained model or to resume a stream.
+ * The nodes are identified by their position: the root has the position 0, the NYT
+ * node the highest one, and the position of a node is the root's node number minus the
+ * node's number. Because of the sibling property, the left child of an internal node
+ * directly follows its right child. A snapshot is stored as:
+ * <PRE>
+ * coder                  1 byte   the id of the adaptive Huffman coder (see {@link CoderType})
+ * number of nodes        4 bytes
+ * for every node except the NYT node, starting with the root:
+ *   internal node        4 bytes  the position of the right child
+ *   leaf                 4 bytes  -1 - the character
+ *                        4 bytes  the weight
+ * </PRE>
+ * The weights of the internal nodes are the sums of their children's weights, so they
+ * are not stored.
+ * @author Raphael Brandis
+ */
+public class CoderState {
+    // a tree cannot have more nodes than a tree containing every Unicode code point
+    private static final int MAX_NODE_COUNT = 2 * (Character.MAX_CODE_POINT + 1) + 1;
+    
+    private CoderType coderType;
+    // by position: the position of the right child (internal nodes) or 0 (leaves)
+    private int[] rightChildren;
+    // by position: the character (leaves except the NYT node) or 0
+    private int[] characters;
+    // by position: the weight of the node
+    private int[] weights;
+    
+    /**
+     * Constructor for CoderStates. The arrays are indexed by position and are not
+     * copied.
+     * @param coderType the adaptive Huffman coder the snapshot has been taken of
+     * @param rightChildren the positions of the internal nodes' right children, 0 for leaves
+     * @param characters the characters of the leaves
+     * @param weights the weights of all nodes
+     */
+    CoderState(CoderType coderType, int[] rightChildren, int[] characters, int[] weights) {
+        this.coderType = coderType;
+        this.rightChildren = rightChildren;
+        this.characters = characters;
+        this.weights = weights;
+    }
+    
+    /**
+     * Returns the adaptive Huffman coder the snapshot has been taken of, which is the
+     * only one that can be created from it.
+     * @return the coder's type
+     */
+    public CoderType getCoderType() {
+        return this.coderType;
+    }
+    
+    /**
+     * Returns the number of characters the coder knows.
+     * @return the number of leaves except the NYT node
+     */
+    public int getCharacterCount() {
+        return this.rightChildren.length / 2;
+    }
+    
+    /**
+     * Returns the number of nodes of the tree.
+     * @return the number of nodes including the NYT node
+     */
+    int getNodeCount() {
+        return this.rightChildren.length;
+    }
+    
+    /**
+     * Checks if the node at the given position is a leaf.
+     * @param position a node's position
+     * @return true if the node is a leaf, false if it is an internal node
+     */
+    boolean isLeaf(int position) {
+        return this.rightChildren[position] == 0;
+    }
+    
+    /**
+     * Returns the position of an internal node's right child. The left child's position
+     * is the next one.
+     * @param position an internal node's position
+     * @return the right child's position
+     */
+    int getRightChild(int position) {
+        return this.rightChildren[position];
+    }
+    
+    /**
+     * Returns the character of a leaf.
+     * @param position the position of a leaf other than the NYT node
+     * @return the leaf's character
+     */
+    int getCharacter(int position) {
+        return this.characters[position];
+    }
+    
+    /**
+     * Returns the weight of a node.
+     * @param position a node's position
+     * @return the node's weight
+     */
+    int getWeight(int position) {
+        return this.weights[position];
+    }
+    
+    /**
+     * Returns a snapshot of a tree with the same characters and halved weights (rounded
+     * up, so every character keeps a weight of at least 1). Halving the weights may break
+     * the sibling property of the old tree's shape, so a new tree is built using Huffman's
+     * algorithm: the two nodes with the lowest weights are merged until only the root is
+     * left, a leaf being taken before an internal node of the same weight. Numbering the
+     * nodes in the order they are merged yields the sibling property and keeps the leaves
+     * in front of the internal nodes of the same weight as Vitter's algorithm requires.
+     * The NYT node (weight 0) is merged first, so it still has the lowest number.
+     * @return the snapshot of the new tree
+     */
+    CoderState halveWeights() {
+        int nodeCount = this.getNodeCount();
+        int leafCount = (nodeCount + 1) / 2;
+        
+        // the leaves sorted by their new weight; leaves of the same weight keep their order
+        long[] sortedLeaves = new long[leafCount];
+        int leafIndex = 0;
+        for (int i = nodeCount - 1; i >= 0; i--) {
+            if (this.isLeaf(i)) {
+                long weight = (i == nodeCount - 1) ? 0 : (this.weights[i] + 1L) / 2;
+                sortedLeaves[leafIndex++] = (weight << 32) | (nodeCount - 1 - i);
+            }
+        }
+        Arrays.sort(sortedLeaves);
+        
+        // the nodes in the order they are merged: leaves are identified by their old
+        // position, internal nodes by nodeCount + the order of their creation
+        int[] mergeOrder = new int[nodeCount];
+        long[] internalWeights = new long[leafCount - 1];
+        int[] internalRightChildren = new int[leafCount - 1];
+        int mergedCount = 0;
+        int nextLeaf = 0;
+        int nextInternal = 0;
+        for (int created = 0; created < leafCount - 1; created++) {
+            long weight = 0;
+            for (int j = 0; j < 2; j++) {
+                // the internal nodes are created with non-decreasing weights, so the lowest
+                // weight is at the front of either the leaves or the internal nodes
+                if (nextLeaf < leafCount && (nextInternal == created || (sortedLeaves[nextLeaf] >>> 32) <= internalWeights[nextInternal])) {
+                    weight += sortedLeaves[nextLeaf] >>> 32;
+                    mergeOrder[mergedCount++] = nodeCount - 1 - (int) sortedLeaves[nextLeaf++];
+                } else {
+                    weight += internalWeights[nextInternal];
+                    mergeOrder[mergedCount++] = nodeCount + nextInternal++;
+                }
+            }
+            internalWeights[created] = weight;
+            // the node merged second becomes the right child, which has the higher number
+            internalRightChildren[created] = nodeCount - mergedCount;
+        }
+        mergeOrder[mergedCount] = nodeCount + leafCount - 2;
+        
+        // the node merged first gets the lowest number, i.e. the highest position
+        int[] rightChildren = new int[nodeCount];
+        int[] characters = new int[nodeCount];
+        int[] weights = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int position = nodeCount - 1 - i;
+            int node = mergeOrder[i];
+            if (node < nodeCount) {
+                characters[position] = this.characters[node];
+                weights[position] = (node == nodeCount - 1) ? 0 : (int) ((this.weights[node] + 1L) / 2);
+            } else {
+                rightChildren[position] = internalRightChildren[node - nodeCount];
+                weights[position] = (int) internalWeights[node - nodeCount];
+            }
+        }
+        return new CoderState(this.coderType, rightChildren, characters, weights);
+    }
+    
+    /**
+     * Writes the snapshot.
+     * @param out the destination the snapshot should be written to
+     * @throws java.io.IOException 
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(this.coderType.getId());
+        out.writeInt(this.rightChildren.length);
+        for (int i = 0; i < this.rightChildren.length - 1; i++) {
+            if (this.isLeaf(i)) {
+                out.writeInt(-1 - this.characters[i]);
+                out.writeInt(this.weights[i]);
+            } else {
+                out.writeInt(this.rightChildren[i]);
+            }
+        }
+    }
+    
+    /**
+     * Reads a snapshot previously written by {@link #write(DataOutput)} and checks that
+     * it describes a tree the coder could have built.
+     * @param in the source the snapshot should be read from
+     * @return the snapshot
+     * @throws java.io.IOException if the snapshot is corrupt
+     */
+    public static CoderState read(DataInput in) throws IOException {
+        CoderType coderType;
+        try {
+            coderType = CoderType.fromId(in.readUnsignedByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt coder state", e);
+        }
+        
+        int nodeCount = in.readInt();
+        if (nodeCount < 1 || nodeCount > MAX_NODE_COUNT || nodeCount % 2 == 0) {
+            throw new IOException("Corrupt coder state");
+        }
+        
+        int[] rightChildren = new int[nodeCount];
+        int[] characters = new int[nodeCount];
+        int[] weights = new int[nodeCount];
+        boolean[] hasParent = new boolean[nodeCount];
+        Set<Integer> knownCharacters = new HashSet<Integer>();
+        for (int i = 0; i < nodeCount - 1; i++) {
+            int entry = in.readInt();
+            if (entry < 0) {
+                characters[i] = -1 - entry;
+                weights[i] = in.readInt();
+                if (characters[i] > Character.MAX_CODE_POINT || weights[i] < 1 || !knownCharacters.add(characters[i])) {
+                    throw new IOException("Corrupt coder state");
+                }
+            } else {
+                // the children are pairs of positions (1, 2), (3, 4)... below their parent
+                if (entry <= i || entry >= nodeCount - 1 || entry % 2 == 0 || hasParent[entry]) {
+                    throw new IOException("Corrupt coder state");
+                }
+                rightChildren[i] = entry;
+                hasParent[entry] = true;
+                hasParent[entry + 1] = true;
+            }
+        }
+        
+        // the children lie below their parents, so the internal nodes' weights can be
+        // added up from the bottom; the NYT node's weight is 0
+        for (int i = nodeCount - 1; i >= 0; i--) {
+            if (i > 0 && !hasParent[i]) {
+                throw new IOException("Corrupt coder state");
+            }
+            if (rightChildren[i] != 0) {
+                long weight = (long) weights[rightChildren[i]] + weights[rightChildren[i] + 1];
+                if (weight > Integer.MAX_VALUE) {
+                    throw new IOException("Corrupt coder state");
+                }
+                weights[i] = (int) weight;
+            }
+        }
+        
+        // the sibling property: the weights do not increase with the position; Vitter's
+        // algorithm additionally keeps the internal nodes in front of the leaves of the same weight
+        for (int i = 0; i < nodeCount - 1; i++) {
+            if (weights[i] < weights[i + 1]) {
+                throw new IOException("Corrupt coder state");
+            }
+            if (coderType == CoderType.VITTER && weights[i] == weights[i + 1] && rightChildren[i] == 0 && rightChildren[i + 1] != 0) {
+                throw new IOException("Corrupt coder state");
+            }
+        }
+        return new CoderState(coderType, rightChildren, characters, weights);
+    }
+}
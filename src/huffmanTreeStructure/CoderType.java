@@ -0,0 +1,85 @@
+package huffmanTreeStructure;
+
+/**
+ * The adaptive Huffman coders that can be used to compress files. The id of a coder
+ * is stored in every compressed file, so the ids must never change.
+ * @author Raphael Brandis
+ */
+public enum CoderType {
+    /**
+     * The algorithm by Faller, Gallager and Knuth ({@link HuffmanTree}, or
+     * {@link ArrayHuffmanTree}, which produces the same codes, if {@link #FGK_ARRAYS})
+     */
+    FGK(0),
+    
+    /**
+     * Vitter's algorithm V ({@link VitterHuffmanTree})
+     */
+    VITTER(1);
+    
+    /**
+     * Whether {@link #FGK} creates {@link ArrayHuffmanTree}s instead of
+     * {@link HuffmanTree}s, read once from the system property "huffman.fgk.arrays"
+     */
+    public static final boolean FGK_ARRAYS = Boolean.getBoolean("huffman.fgk.arrays");
+    
+    private final int id;
+    
+    private CoderType(int id) {
+        this.id = id;
+    }
+    
+    /**
+     * Returns the id that is stored in compressed files.
+     * @return the coder's id
+     */
+    public int getId() {
+        return this.id;
+    }
+    
+    /**
+     * Creates a new coder of this type that does not know any characters yet.
+     * @return the new coder
+     */
+    public AdaptiveHuffmanCoder createCoder() {
+        switch (this) {
+            case VITTER:
+                return new VitterHuffmanTree();
+            default:
+                return FGK_ARRAYS ? new ArrayHuffmanTree() : new HuffmanTree();
+        }
+    }
+    
+    /**
+     * Creates a new coder of this type that starts with the state of another coder.
+     * @param state a snapshot taken of a coder of this type
+     * @return the new coder
+     * @throws IllegalArgumentException if the snapshot has been taken of another type of coder
+     */
+    public AdaptiveHuffmanCoder createCoder(CoderState state) {
+        if (state.getCoderType() != this) {
+            throw new IllegalArgumentException("The state of a " + state.getCoderType() + " coder cannot be used for " + this);
+        }
+        switch (this) {
+            case VITTER:
+                return new VitterHuffmanTree(state);
+            default:
+                return FGK_ARRAYS ? new ArrayHuffmanTree(state) : new HuffmanTree(state);
+        }
+    }
+    
+    /**
+     * Returns the coder type with the given id.
+     * @param id a coder's id as returned by {@link #getId()}
+     * @return the coder type
+     * @throws IllegalArgumentException if there is no coder with the given id
+     */
+    public static CoderType fromId(int id) {
+        for (CoderType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown coder id: " + id);
+    }
+}
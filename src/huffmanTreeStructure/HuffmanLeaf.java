@@ -18,14 +18,15 @@ public class HuffmanLeaf extends HuffmanNode {
     }
     
     /**
-     * Constructor for Huffman leaves representing a single character
-     * @param value the character this leaf represents
+     * Constructor for Huffman leaves representing a single character. The leaf's
+     * weight is 0 until the tree increments it.
+     * @param value the character (code point or byte) this leaf represents
      * @param parent the parent InternalHuffmanNode
      */
-    public HuffmanLeaf(char value, InternalHuffmanNode parent) {
+    public HuffmanLeaf(int value, InternalHuffmanNode parent) {
         this.value = value;
         this.parent = parent;
-        this.weight = 1;
+        this.weight = 0;
     }
     
     /**
@@ -47,6 +48,6 @@ public class HuffmanLeaf extends HuffmanNode {
      * @return value, number and weight of the leaf in a String
      */
     public String toString() {
-        return value + ":" + number + ":" + weight;
+        return new StringBuilder().appendCodePoint(value) + ":" + number + ":" + weight;
     }
 }
@@ -11,9 +11,10 @@ public abstract class HuffmanNode {
     protected InternalHuffmanNode parent;
     protected int weight;
     protected int number;
-    protected char value;
+    protected int value;
     protected HuffmanNode leftChild;
     protected HuffmanNode rightChild;
+    protected Block block;
     
     
     /**
@@ -34,13 +35,22 @@ public abstract class HuffmanNode {
     
     /**
      * Returns the node's weight, i.e. the weights of both of its children added up or
-     * the probability of its character if it is a leaf node.
+     * the probability of its character if it is a leaf node. The weight is stored in
+     * the node, so this takes constant time.
      * @return the node's weight
      */
     public int getWeight() {
         return this.weight;
     }
     
+    /**
+     * Sets the node's weight.
+     * @param weight the new weight
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+    
     /**
      * Increments the node's weight.
      * This method does _not_ increment the parent's weight!
@@ -57,7 +67,7 @@ public abstract class HuffmanNode {
     public int getNumber() {
         return this.number;
     }
-        
+    
     /**
      * Sets the node's number.
      * @param number the new number
@@ -67,10 +77,26 @@ public abstract class HuffmanNode {
     }
     
     /**
-     * Returns the node's value, i.e. the character it represents.
+     * Returns the block of nodes with the same weight this node belongs to.
+     * @return the node's block
+     */
+    public Block getBlock() {
+        return this.block;
+    }
+    
+    /**
+     * Sets the block of nodes with the same weight this node belongs to.
+     * @param block the new block
+     */
+    public void setBlock(Block block) {
+        this.block = block;
+    }
+    
+    /**
+     * Returns the node's value, i.e. the character (code point or byte) it represents.
      * @return the node's character
      */
-    public char getValue() {
+    public int getValue() {
         return this.value;
     }
     
@@ -5,21 +5,11 @@ import java.io.PrintStream;
 /**
  * This class implements the internal nodes used in a Huffman tree. They have two
  * {@link HuffmanNode}s as children and their weight equals the weight of both
- * children added up.
+ * children added up. The weight is not recomputed from the children but stored in
+ * the node and incremented by the {@link HuffmanTree} along the path it updates.
  * @author Raphael Brandis
  */
 public class InternalHuffmanNode extends HuffmanNode {
-    /*
-    public void InternalHuffmanNode(HuffmanNode leftChild, HuffmanNode rightChild) {
-        this.leftChild = leftChild;
-        this.rightChild = rightChild;
-    }
-    
-    public int getWeight() {
-        return this.leftChild.getWeight() + this.rightChild.getWeight();
-    }
-    */
-    
     /**
      * Sets the node's left child.
      * @param newChild the node that should become the new left child
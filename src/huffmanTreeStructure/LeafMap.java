@@ -0,0 +1,112 @@
+package huffmanTreeStructure;
+
+import java.util.Arrays;
+
+/**
+ * This class maps characters (Unicode code points or bytes) to the ids of the leaves
+ * representing them; the trees keep their leaves in arrays indexed by these ids. It
+ * uses open addressing with linear probing on primitive int arrays, so looking up a
+ * character neither boxes it nor follows a chain of entry objects. The table starts
+ * small and doubles whenever it gets half full, so its size depends on the number of
+ * different characters actually added.
+ * @author Raphael Brandis
+ */
+public class LeafMap {
+    // marks an unused slot; no character has a negative code point
+    private static final int FREE = -1;
+    
+    private int[] characters = new int[16];
+    private int[] ids = new int[16];
+    private int size;
+    
+    /**
+     * Constructor for empty LeafMaps
+     */
+    public LeafMap() {
+        Arrays.fill(this.characters, FREE);
+    }
+    
+    /**
+     * Constructor for LeafMaps that copy another one
+     * @param map the LeafMap to copy
+     */
+    public LeafMap(LeafMap map) {
+        this.characters = map.characters.clone();
+        this.ids = map.ids.clone();
+        this.size = map.size;
+    }
+    
+    /**
+     * Returns the id of the given character's leaf.
+     * @param character the character to search for
+     * @return the id of the character's leaf or -1 if it has not been added
+     */
+    public int get(int character) {
+        int mask = this.characters.length - 1;
+        for (int i = hash(character) & mask; this.characters[i] != FREE; i = (i + 1) & mask) {
+            if (this.characters[i] == character) {
+                return this.ids[i];
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Adds a character that has not been added before.
+     * @param character the character (not negative)
+     * @param id the id of the leaf representing the character (not negative)
+     */
+    public void put(int character, int id) {
+        if (2 * (this.size + 1) > this.characters.length) {
+            this.resize(this.characters.length * 2);
+        }
+        this.insert(character, id);
+        this.size++;
+    }
+    
+    /**
+     * Returns the number of characters in the map.
+     * @return the number of characters
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Removes all characters, but keeps the size of the table.
+     */
+    public void clear() {
+        Arrays.fill(this.characters, FREE);
+        this.size = 0;
+    }
+    
+    private void insert(int character, int id) {
+        int mask = this.characters.length - 1;
+        int i = hash(character) & mask;
+        while (this.characters[i] != FREE) {
+            i = (i + 1) & mask;
+        }
+        this.characters[i] = character;
+        this.ids[i] = id;
+    }
+    
+    private void resize(int capacity) {
+        int[] oldCharacters = this.characters;
+        int[] oldIds = this.ids;
+        this.characters = new int[capacity];
+        this.ids = new int[capacity];
+        Arrays.fill(this.characters, FREE);
+        
+        for (int i = 0; i < oldCharacters.length; i++) {
+            if (oldCharacters[i] != FREE) {
+                this.insert(oldCharacters[i], oldIds[i]);
+            }
+        }
+    }
+    
+    // spreads neighbouring code points (e.g. the letters of one script) over the table
+    private static int hash(int character) {
+        int h = character * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
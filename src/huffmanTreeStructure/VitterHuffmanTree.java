@@ -0,0 +1,165 @@
+package huffmanTreeStructure;
+
+/**
+ * This class maintains the Huffman tree's structure using Vitter's algorithm V
+ * (J. S. Vitter: Design and Analysis of Dynamic Huffman Codes, 1987). In addition to
+ * the sibling property, it keeps all leaves in front of the internal nodes of the
+ * same weight. Therefore the tree has the minimum height and external path length
+ * of all Huffman trees for the current weights, which bounds the code lengths more
+ * tightly than the FGK algorithm.
+ * The nodes with the same weight and kind (leaves or internal nodes) form a
+ * {@link Block}, so the leader of a node's block is found in constant time.
+ * @author Raphael Brandis
+ */
+public class VitterHuffmanTree extends AdaptiveHuffmanTree {
+    // a block that became empty and can be reused instead of allocating a new one
+    private Block spareBlock;
+    
+    /**
+     * This constructor creates an (almost) empty Huffman tree with a NYT node as the
+     * root.
+     */
+    public VitterHuffmanTree() {
+        this.getNYTNode().setBlock(new Block(this.rootNumber));
+    }
+    
+    /**
+     * This constructor creates a Huffman tree from a snapshot of another Vitter tree.
+     * @param state the snapshot
+     */
+    public VitterHuffmanTree(CoderState state) {
+        super(state);
+    }
+    
+    /**
+     * Returns the type of the coder.
+     * @return {@link CoderType#VITTER}
+     */
+    public CoderType getCoderType() {
+        return CoderType.VITTER;
+    }
+    
+    /**
+     * Creates a new tree with the same state as this one.
+     * @return the copy
+     */
+    public AdaptiveHuffmanCoder copy() {
+        VitterHuffmanTree copy = new VitterHuffmanTree(this.getState());
+        copy.setRescaleLimit(this.getRescaleLimit());
+        return copy;
+    }
+    
+    /**
+     * Puts the nodes into blocks after the tree has been created from a snapshot or
+     * rebuilt: the nodes of a block have the same weight and are either all leaves or all internal nodes.
+     */
+    protected void createBlocks() {
+        this.putIntoBlocks(true);
+    }
+    
+    /**
+     * Increments the weight of the given leaf and of all of its ancestors by 1 and
+     * reorganizes the tree using Vitter's algorithm.
+     * @param leaf the leaf whose weight should be incremented
+     */
+    protected void update(HuffmanNode leaf) {
+        HuffmanNode leafToIncrement = null;
+        HuffmanNode node = leaf;
+        
+        if (leaf.getBlock() == null) {
+            // a new leaf: it is the leader of the NYT node's block now, its parent at the NYT
+            // node's former position is the only internal node with the weight 0
+            leaf.setBlock(this.getNYTNode().getBlock());
+            leaf.getBlock().setLeader(leaf.getNumber());
+            leaf.getParent().setBlock(this.createBlock(leaf.getParent().getNumber()));
+            
+            // the parent is updated first
+            leafToIncrement = leaf;
+            node = leaf.getParent();
+        } else {
+            HuffmanNode leader = this.getNode(leaf.getBlock().getLeader());
+            if (leader != leaf) {
+                this.swap(leaf, leader);
+            }
+            
+            if (leaf.getSibling() == this.getNYTNode()) {
+                // the leaf's parent has the same weight as the leaf and has to be updated first
+                leafToIncrement = leaf;
+                node = leaf.getParent();
+            }
+        }
+        
+        // the loop ends after the root has been incremented
+        while (node != null) {
+            node = this.slideAndIncrement(node);
+        }
+        
+        if (leafToIncrement != null) {
+            this.slideAndIncrement(leafToIncrement);
+        }
+    }
+    
+    // moves the given node past the block of nodes it has to precede after its weight
+    // has been incremented, increments the weight and returns the next node to update
+    private HuffmanNode slideAndIncrement(HuffmanNode node) {
+        boolean isLeaf = node instanceof HuffmanLeaf;
+        
+        // the node has to be the leader of its block to leave it
+        Block block = node.getBlock();
+        HuffmanNode leader = this.getNode(block.getLeader());
+        if (leader != node) {
+            this.swap(node, leader);
+        }
+        InternalHuffmanNode formerParent = node.getParent();
+        int number = node.getNumber();
+        
+        // the node leaves its block
+        if (number > this.lastAssignedNodeNumber && this.getNode(number - 1).getBlock() == block) {
+            block.setLeader(number - 1);
+        } else {
+            this.spareBlock = block;
+        }
+        
+        // a leaf has to pass the internal nodes of its own weight, an internal node has
+        // to pass the leaves of its future weight; as the order of the nodes within a
+        // block does not matter, it is enough to swap the node with that block's leader
+        int weightToPass = isLeaf ? node.getWeight() : node.getWeight() + 1;
+        if (number < this.rootNumber) {
+            HuffmanNode nextNode = this.getNode(number + 1);
+            if (nextNode.getWeight() == weightToPass && (nextNode instanceof HuffmanLeaf) != isLeaf) {
+                Block nextBlock = nextNode.getBlock();
+                this.swap(node, this.getNode(nextBlock.getLeader()));
+                nextBlock.setLeader(nextBlock.getLeader() - 1);
+                number = node.getNumber();
+            }
+        }
+        node.incrementWeight();
+        if (CoderMetrics.ENABLED) {
+            this.getMetrics().updatedNodeCount++;
+        }
+        
+        // the node joins the block of the nodes with its new weight and kind, which is right above it
+        if (number < this.rootNumber && this.getNode(number + 1).getWeight() == node.getWeight()
+                && (this.getNode(number + 1) instanceof HuffmanLeaf) == isLeaf) {
+            node.setBlock(this.getNode(number + 1).getBlock());
+        } else {
+            node.setBlock(this.createBlock(number));
+        }
+        
+        // the internal nodes the leaf has passed now include the leaf, so its new parent
+        // has to be incremented; an internal node has only passed leaves, so its former
+        // parent has to be incremented
+        return isLeaf ? node.getParent() : formerParent;
+    }
+    
+    // returns a block with the given leader, reusing the spare block if there is one
+    private Block createBlock(int leader) {
+        Block block = this.spareBlock;
+        if (block == null) {
+            return new Block(leader);
+        }
+        this.spareBlock = null;
+        block.setLeader(leader);
+        return block;
+    }
+}
@@ -0,0 +1,129 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class measures how fast an {@link Encoder} compresses files and a
+ * {@link Decoder} decompresses them again. Every file is compressed and decompressed
+ * a number of times to warm up the JVM first; afterwards the time of every single
+ * iteration is measured, so the results contain the latency percentiles as well as
+ * the throughput (see {@link BenchmarkResult}). The compressed and decompressed files
+ * are written to temporary files, which are deleted afterwards. The output of the
+ * previous iteration is deleted before an iteration starts, as some file systems take
+ * much longer to truncate a file than to create a new one.
+ * The bytes allocated by the current thread are measured if the JVM supports it
+ * (com.sun.management.ThreadMXBean).
+ * @author Raphael Brandis
+ */
+public class Benchmark {
+    private Encoder encoder;
+    private Decoder decoder;
+    private int warmupIterations;
+    private int iterations;
+    
+    /**
+     * Constructor for Benchmarks
+     * @param encoder the Encoder that should compress the files
+     * @param decoder the Decoder that should decompress them
+     * @param warmupIterations the number of iterations per file that are not measured
+     * @param iterations the number of measured iterations per file
+     */
+    public Benchmark(Encoder encoder, Decoder decoder, int warmupIterations, int iterations) {
+        if (warmupIterations < 0 || iterations < 1) {
+            throw new IllegalArgumentException("Invalid number of iterations: " + warmupIterations + ", " + iterations);
+        }
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+    }
+    
+    /**
+     * Measures the given file or all files in the given directory (not in its
+     * subdirectories) in the order of their names.
+     * @param path a file or a directory
+     * @return the results of compressing and decompressing every file
+     * @throws java.io.IOException if a file cannot be compressed or decompressed
+     */
+    public List<BenchmarkResult> run(File path) throws IOException {
+        File[] files;
+        if (path.isDirectory()) {
+            files = path.listFiles();
+            Arrays.sort(files);
+        } else if (path.isFile()) {
+            files = new File[] {path};
+        } else {
+            throw new IOException("File not found: " + path);
+        }
+        
+        List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+        for (File file : files) {
+            if (file.isFile()) {
+                this.run(file, results);
+            }
+        }
+        return results;
+    }
+    
+    // measures compressing and decompressing a file and adds both results
+    private void run(File file, List<BenchmarkResult> results) throws IOException {
+        File compressedFile = File.createTempFile("benchmark", ".ahc");
+        File decompressedFile = File.createTempFile("benchmark", ".out");
+        try {
+            String input = file.getPath();
+            String compressed = compressedFile.getPath();
+            String decompressed = decompressedFile.getPath();
+            for (int i = 0; i < this.warmupIterations; i++) {
+                this.encoder.compressFile(input, compressed);
+                this.decoder.decompressFile(compressed, decompressed);
+            }
+            
+            long[] compressNanos = new long[this.iterations];
+            long allocated = allocatedBytes();
+            for (int i = 0; i < this.iterations; i++) {
+                compressedFile.delete();
+                long start = System.nanoTime();
+                this.encoder.compressFile(input, compressed);
+                compressNanos[i] = System.nanoTime() - start;
+            }
+            long compressAllocated = perIteration(allocated, allocatedBytes());
+            
+            long[] decompressNanos = new long[this.iterations];
+            allocated = allocatedBytes();
+            for (int i = 0; i < this.iterations; i++) {
+                decompressedFile.delete();
+                long start = System.nanoTime();
+                this.decoder.decompressFile(compressed, decompressed);
+                decompressNanos[i] = System.nanoTime() - start;
+            }
+            long decompressAllocated = perIteration(allocated, allocatedBytes());
+            
+            results.add(new BenchmarkResult(input, "compress", file.length(), compressedFile.length(), compressNanos, compressAllocated));
+            results.add(new BenchmarkResult(input, "decompress", file.length(), compressedFile.length(), decompressNanos, decompressAllocated));
+        } finally {
+            compressedFile.delete();
+            decompressedFile.delete();
+        }
+    }
+    
+    // returns the bytes allocated per iteration between two measurements or -1
+    private long perIteration(long before, long after) {
+        return (before == -1 || after == -1) ? -1 : (after - before) / this.iterations;
+    }
+    
+    // returns the number of bytes the current thread has allocated so far or -1 if
+    // the JVM cannot measure it
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,143 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * This class describes how fast a {@link Benchmark} has compressed or decompressed a
+ * file: the time every measured iteration took, the bytes allocated per iteration
+ * and the sizes of the original and the compressed file.
+ * @author Raphael Brandis
+ */
+public class BenchmarkResult {
+    private String filename;
+    private String operation;
+    private long originalBytes;
+    private long compressedBytes;
+    // sorted
+    private long[] iterationNanos;
+    private long allocatedBytes;
+    
+    /**
+     * Constructor for BenchmarkResults
+     * @param filename the path of the original file
+     * @param operation "compress" or "decompress"
+     * @param originalBytes the size of the original file
+     * @param compressedBytes the size of the compressed file
+     * @param iterationNanos the time every measured iteration took in nanoseconds (the array is sorted)
+     * @param allocatedBytes the bytes allocated per iteration or -1 if the JVM cannot measure them
+     */
+    public BenchmarkResult(String filename, String operation, long originalBytes, long compressedBytes, long[] iterationNanos, long allocatedBytes) {
+        this.filename = filename;
+        this.operation = operation;
+        this.originalBytes = originalBytes;
+        this.compressedBytes = compressedBytes;
+        this.iterationNanos = iterationNanos;
+        Arrays.sort(this.iterationNanos);
+        this.allocatedBytes = allocatedBytes;
+    }
+    
+    /**
+     * Returns the path of the original file
+     * @return the file's path
+     */
+    public String getFilename() {
+        return this.filename;
+    }
+    
+    /**
+     * Returns the operation that has been measured
+     * @return "compress" or "decompress"
+     */
+    public String getOperation() {
+        return this.operation;
+    }
+    
+    /**
+     * Returns the size of the original file
+     * @return the number of bytes
+     */
+    public long getOriginalBytes() {
+        return this.originalBytes;
+    }
+    
+    /**
+     * Returns the size of the compressed file including its header
+     * @return the number of bytes
+     */
+    public long getCompressedBytes() {
+        return this.compressedBytes;
+    }
+    
+    /**
+     * Returns the size of the compressed file relative to the original one
+     * @return the compression ratio (less than 1 if the file got smaller)
+     */
+    public double getCompressionRatio() {
+        return (this.originalBytes == 0) ? 0 : (double) this.compressedBytes / this.originalBytes;
+    }
+    
+    /**
+     * Returns the average throughput of the measured iterations
+     * @return the original file's megabytes (10^6 bytes) per second
+     */
+    public double getMegabytesPerSecond() {
+        long totalNanos = 0;
+        for (long nanos : this.iterationNanos) {
+            totalNanos += nanos;
+        }
+        return (totalNanos == 0) ? 0 : this.originalBytes * (double) this.iterationNanos.length * 1000 / totalNanos;
+    }
+    
+    /**
+     * Returns the time within which the given share of the iterations were done,
+     * using the nearest-rank method.
+     * @param percentile the share of iterations between 0 and 100, e.g. 50 for the median
+     * @return the time in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * this.iterationNanos.length);
+        return this.iterationNanos[Math.max(0, Math.min(this.iterationNanos.length - 1, rank - 1))];
+    }
+    
+    /**
+     * Returns the bytes allocated by the benchmark's thread per iteration; threads
+     * started by the iteration, e.g. in block mode, are not included
+     * @return the number of bytes or -1 if the JVM cannot measure them
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+    
+    /**
+     * Returns the result as a JSON object.
+     * @return the JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"file\": \"");
+        for (char c : this.filename.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append(String.format(Locale.ROOT, "\", \"operation\": \"%s\", \"bytes\": %d, \"compressedBytes\": %d, \"ratio\": %.4f, "
+                + "\"iterations\": %d, \"mbPerSecond\": %.2f, \"p50Nanos\": %d, \"p99Nanos\": %d, \"allocatedBytes\": %d}",
+                this.operation, this.originalBytes, this.compressedBytes, this.getCompressionRatio(), this.iterationNanos.length,
+                this.getMegabytesPerSecond(), this.getPercentileNanos(50), this.getPercentileNanos(99), this.allocatedBytes));
+        return json.toString();
+    }
+    
+    /**
+     * Returns the result as a line of the table printed by {@link Main}.
+     * @return the line
+     */
+    public String toString() {
+        return String.format(Locale.ROOT, "%-30s %-10s %12d %7.3f %9.2f %10.2f %10.2f %12d", this.filename, this.operation, this.originalBytes,
+                this.getCompressionRatio(), this.getMegabytesPerSecond(), this.getPercentileNanos(50) / 1e6, this.getPercentileNanos(99) / 1e6,
+                this.allocatedBytes);
+    }
+}
@@ -1,124 +1,112 @@
 package main;
 
-import java.util.Stack;
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import java.io.IOException;
 
 /**
- * <PRE> This class provides methods to encode and decode characters in UTF-8 on bit level
- * using a stack to store the bits. The bits are pushed on the stack backwards so that
- * Stack.pop() returns them in the right order.
- * It is based on the bits2Ints() and toBinary() methods from
- * http://www.java2s.com/Code/Java/Collections-Data-Structure/Convertbitsettointarrayandstring.htm
- * 
- * static int[] bits2Ints(BitSet bs) {
- *    int[] temp = new int[bs.size() / 32];
- *    
- *    for (int i = 0; i < temp.length; i++)
- *        for (int j = 0; j < 32; j++)
- *            if (bs.get(i * 32 + j))
- *                temp[i] |= 1 << j;
- *    
- *    return temp;
- * }
- * 
- * static String toBinary(int num) {
- *    StringBuffer sb = new StringBuffer();
- *    
- *    for (int i = 0; i < 32; i++) {
- *        sb.append(((num & 1) == 1) ? '1' : '0');
- *        num >>= 1;
- *    }
- *    
- *    return sb.reverse().toString();
- * }
- * </PRE>
+ * This class provides methods to encode and decode characters in UTF-8 on bit level.
+ * The UTF-8 bytes of a character are packed into a single int (the first byte being
+ * the most significant one that is used), so no objects are created per character.
  * @author Raphael Brandis
  */
 public class BitTools {
     /**
-     * Takes a character and computes its UTF-8 bitcode
-     * @param num the character that should be encoded (casted to int)
-     * @param reversedBits a stack the bits should be pushed on (the last bits will be on top)
+     * Computes the number of bytes of the given character's UTF-8 code
+     * @param num the character (casted to int)
+     * @return the number of bytes (1 to 4)
      */
-    public static void encodeUTF8Character(int num, Stack<Boolean> reversedBits) {
-        int i, size = 1;
-        
+    public static int getUTF8Length(int num) {
         if (num > 65535) {
-            // 4 Bytes
-            size = 4;
+            return 4;
         } else if (num > 2047) {
-            // 3 Bytes
-            size = 3;
+            return 3;
         } else if (num > 127) {
-            // 2 Bytes
-            size = 2;
+            return 2;
         }
+        return 1;
+    }
+    
+    /**
+     * Takes a character and computes its UTF-8 bitcode
+     * @param num the character that should be encoded (casted to int)
+     * @return the UTF-8 bytes packed into the lowest {@link #getUTF8Length(int)} bytes of an int
+     */
+    public static int encodeUTF8Character(int num) {
+        int size = getUTF8Length(num);
         
-        // write continuation bytes starting with 10
-        for (i = 0; i < size-1; i++) {
-            for (int j = 0; j < 6; j++) {
-                reversedBits.push(((num & 1) == 1) ? true : false);
-                num >>= 1;
-            }
-            reversedBits.push(false);
-            reversedBits.push(true);
+        if (size == 1) {
+            // one-byte characters start with 0
+            return num;
         }
         
-        // write the starting byte
-        // one-byte characters start with 0, two-byte characters with 110,
-        // three-byte characters with 1110 and four-byte characters with 11110
-        for (i = 0; i < (size == 1 ? 7 : 7 - size); i++) {
-            reversedBits.push(((num & 1) == 1) ? true : false);
-            num >>= 1;
-        }
-        reversedBits.push(false);
-        for (i = i + 1; i < 8; i++) {
-            reversedBits.push(true);
+        // the continuation bytes start with 10 and carry 6 bits each
+        int code = 0;
+        for (int i = 0; i < size - 1; i++) {
+            code |= (0x80 | (num & 0x3F)) << (i * 8);
+            num >>= 6;
         }
+        
+        // two-byte characters start with 110, three-byte characters with 1110 and
+        // four-byte characters with 11110
+        int startingByte = (0xFF00 >> size) & 0xFF;
+        return code | ((startingByte | num) << ((size - 1) * 8));
     }
     
     /**
      * Takes in the UTF-8 bitcode for a single character and computes its integer representation
-     * @param bits a stack of the character's bits with the last bits on top
+     * @param code the UTF-8 bytes packed into the lowest bytes of an int
+     * @param size the number of bytes (1 to 4)
      * @return the decoded character as an integer
      */
-    public static int decodeUTF8Character(Stack<Boolean> bits) {
-        int i, j, size, temp = 0;
-        
-        // determine the number of bytes
-        switch (bits.size()) {
-            case 32:
-                size = 4;
-                break;
-            case 24:
-                size = 3;
-                break;
-            case 16:
-                size = 2;
-                break;
-            default:
-                size = 1;
-                break;
+    public static int decodeUTF8Character(int code, int size) {
+        if (size == 1) {
+            return code;
         }
         
-        // handle the continuation bytes (10xx xxxx)
-        for (i = 0; i < size - 1; i++) {
-            // the first six bits are relevant here
-            for (j = 0; j < 6; j++) {
-                if (bits.pop()) {
-                    temp |= 1 << (i * 6 + j);
-                }
-            }
-            // delete the two bits at the beginning
-            bits.pop();
-            bits.pop();
+        // handle the continuation bytes (10xx xxxx), the first six bits are relevant here
+        int temp = 0;
+        for (int i = 0; i < size - 1; i++) {
+            temp |= (code & 0x3F) << (i * 6);
+            code >>= 8;
         }
         
         // handle the starting byte
-        for (j = 0; j < (size == 1 ? 7 : 7 - size); j++) {
-            if (bits.pop()) {
-                temp |= 1 << (i * 6) + j;
-            }
+        return temp | ((code & (0x7F >> size)) << ((size - 1) * 6));
+    }
+    
+    /**
+     * Writes the UTF-8 bitcode of a character to the given stream
+     * @param num the character that should be encoded (casted to int)
+     * @param out the stream the bits should be written to
+     * @throws java.io.IOException 
+     */
+    public static void writeUTF8Character(int num, BitOutputStream out) throws IOException {
+        out.writeBits(encodeUTF8Character(num), getUTF8Length(num) * 8);
+    }
+    
+    /**
+     * Reads the UTF-8 bitcode of a single character from the given stream
+     * @param in the stream the bits should be read from
+     * @return the decoded character as an integer
+     * @throws java.io.IOException if the data ends within the character or is no valid UTF-8
+     */
+    public static int readUTF8Character(BitInputStream in) throws IOException {
+        int startingByte = (int) in.readBits(8);
+        
+        // the number of leading 1-bits of the starting byte determines if it is 1, 2, 3 or 4 bytes long
+        int size = Integer.numberOfLeadingZeros(~(startingByte << 24));
+        if (size == 0) {
+            return startingByte;
+        } else if (size == 1 || size > 4) {
+            throw new IOException("Invalid UTF-8 starting byte: " + startingByte);
+        }
+        
+        int code = (startingByte << ((size - 1) * 8)) | (int) in.readBits((size - 1) * 8);
+        int character = decodeUTF8Character(code, size);
+        if (character > Character.MAX_CODE_POINT) {
+            throw new IOException("Invalid UTF-8 character: " + character);
         }
-        return temp;
+        return character;
     }
 }
@@ -0,0 +1,119 @@
+package main;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class buffers bytes that are written at its end and read from its start, e.g.
+ * the compressed bytes a {@link StreamEncoder} has produced but the caller has not
+ * taken yet. The array grows when it is full and the bytes that have not been read are
+ * moved to its front, so it only gets as large as the most bytes that were ever
+ * buffered at once.
+ * @author Raphael Brandis
+ */
+class ByteQueue extends OutputStream {
+    private static final int INITIAL_SIZE = 8192;
+    
+    // the bytes between start and end have not been read yet
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private int start;
+    private int end;
+    
+    public void write(int b) {
+        this.makeRoom(1);
+        this.bytes[this.end++] = (byte) b;
+    }
+    
+    public void write(byte[] b, int off, int len) {
+        this.makeRoom(len);
+        System.arraycopy(b, off, this.bytes, this.end, len);
+        this.end += len;
+    }
+    
+    /**
+     * Writes the remaining bytes of the given buffer.
+     * @param source the buffer, whose position is moved to its limit
+     */
+    void write(ByteBuffer source) {
+        int len = source.remaining();
+        this.makeRoom(len);
+        source.get(this.bytes, this.end, len);
+        this.end += len;
+    }
+    
+    /**
+     * Reads up to the given number of bytes.
+     * @param b the array the bytes should be copied to
+     * @param off the position in the array of the first byte
+     * @param len the maximum number of bytes
+     * @return the number of bytes read, 0 if the queue is empty
+     */
+    int read(byte[] b, int off, int len) {
+        int n = Math.min(len, this.end - this.start);
+        System.arraycopy(this.bytes, this.start, b, off, n);
+        this.start += n;
+        return n;
+    }
+    
+    /**
+     * Reads as many bytes as fit into the given buffer.
+     * @param destination the buffer the bytes should be copied to
+     * @return the number of bytes read, 0 if the queue is empty
+     */
+    int read(ByteBuffer destination) {
+        int n = Math.min(destination.remaining(), this.end - this.start);
+        destination.put(this.bytes, this.start, n);
+        this.start += n;
+        return n;
+    }
+    
+    /**
+     * Returns the number of bytes that have not been read.
+     * @return the number of bytes
+     */
+    int size() {
+        return this.end - this.start;
+    }
+    
+    /**
+     * Returns the array holding the bytes, so they can be read without copying them.
+     * It is only valid until the next write.
+     * @return the array, the first byte being at {@link #getStart()}
+     */
+    byte[] getBytes() {
+        return this.bytes;
+    }
+    
+    /**
+     * Returns the position of the first byte that has not been read.
+     * @return the position in the array returned by {@link #getBytes()}
+     */
+    int getStart() {
+        return this.start;
+    }
+    
+    /**
+     * Drops the given number of bytes, which have been read through {@link #getBytes()}.
+     * @param n the number of bytes (at most {@link #size()})
+     */
+    void skip(int n) {
+        this.start += n;
+    }
+    
+    // makes sure the given number of bytes fit behind the end
+    private void makeRoom(int n) {
+        if (this.bytes.length - this.end >= n) {
+            return;
+        }
+        int size = this.end - this.start;
+        if (size + n > this.bytes.length - this.bytes.length / 4) {
+            byte[] bytes = new byte[Math.max(2 * this.bytes.length, size + n)];
+            System.arraycopy(this.bytes, this.start, bytes, 0, size);
+            this.bytes = bytes;
+        } else {
+            System.arraycopy(this.bytes, this.start, this.bytes, 0, size);
+        }
+        this.start = 0;
+        this.end = size;
+    }
+}
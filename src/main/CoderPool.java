@@ -0,0 +1,83 @@
+package main;
+
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.CoderType;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class keeps coders that have finished a stream or a block, so the next stream
+ * can reuse one of them instead of creating a new coder. A coder is reset when it is
+ * given back (see {@link AdaptiveHuffmanCoder#reset()}), so it keeps the tables it has
+ * grown for the characters of its previous streams.
+ * Only coders that start with an empty tree are pooled; coders starting with a model
+ * are copies of the model (see {@link Encoder#setCoderPool(CoderPool)}).
+ * A CoderPool may be used by several threads at once.
+ * @author Raphael Brandis
+ */
+public class CoderPool {
+    private int maxIdleCoders;
+    private Map<CoderType, Deque<AdaptiveHuffmanCoder>> idleCoders;
+    
+    /**
+     * Constructor for CoderPools
+     * @param maxIdleCoders the maximum number of unused coders kept per coder type,
+     * usually the number of streams that are coded at once
+     */
+    public CoderPool(int maxIdleCoders) {
+        if (maxIdleCoders < 1) {
+            throw new IllegalArgumentException("Invalid number of coders: " + maxIdleCoders);
+        }
+        this.maxIdleCoders = maxIdleCoders;
+        this.idleCoders = new EnumMap<CoderType, Deque<AdaptiveHuffmanCoder>>(CoderType.class);
+        for (CoderType coderType : CoderType.values()) {
+            this.idleCoders.put(coderType, new ArrayDeque<AdaptiveHuffmanCoder>());
+        }
+    }
+    
+    /**
+     * Returns an unused coder of the given type that does not know any characters, which
+     * is created if the pool does not contain one.
+     * @param coderType the type of the coder
+     * @return the coder (with the default rescale limit)
+     */
+    public AdaptiveHuffmanCoder take(CoderType coderType) {
+        AdaptiveHuffmanCoder coder;
+        synchronized (this.idleCoders) {
+            coder = this.idleCoders.get(coderType).pollFirst();
+        }
+        return (coder == null) ? coderType.createCoder() : coder;
+    }
+    
+    /**
+     * Resets a coder that is not used any more and keeps it for the next call of
+     * {@link #take(CoderType)} unless the pool is full.
+     * @param coder a coder, which must not be used afterwards
+     */
+    public void giveBack(AdaptiveHuffmanCoder coder) {
+        // the coder is reset before taking the lock, so other threads do not wait for it
+        coder.reset();
+        synchronized (this.idleCoders) {
+            Deque<AdaptiveHuffmanCoder> coders = this.idleCoders.get(coder.getCoderType());
+            if (coders.size() < this.maxIdleCoders) {
+                coders.addFirst(coder);
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of unused coders in the pool.
+     * @return the number of coders of all types
+     */
+    public int getIdleCoderCount() {
+        int count = 0;
+        synchronized (this.idleCoders) {
+            for (Deque<AdaptiveHuffmanCoder> coders : this.idleCoders.values()) {
+                count += coders.size();
+            }
+        }
+        return count;
+    }
+}
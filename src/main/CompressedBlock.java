@@ -0,0 +1,99 @@
+package main;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class describes an entry of the block index of a compressed file that was
+ * written in block mode (see {@link CompressedFile}). Every block has been compressed
+ * with its own, initially empty adaptive Huffman tree, so it can be decompressed
+ * independently of the other blocks. An entry is stored as:
+ * <PRE>
+ * offset                 8 bytes  the position of the block's first byte in the file
+ * number of symbols      8 bytes
+ * number of payload bits 8 bytes
+ * </PRE>
+ * @author Raphael Brandis
+ */
+public class CompressedBlock {
+    /**
+     * The size of an index entry in bytes
+     */
+    public static final int ENTRY_SIZE = 8 + 8 + 8;
+    
+    private long offset;
+    private long characterCount;
+    private long payloadBits;
+    
+    /**
+     * Constructor for CompressedBlock index entries
+     * @param offset the position of the block's first byte in the compressed file
+     * @param characterCount the number of symbols (characters or bytes) in the block
+     * @param payloadBits the number of bits the block has been compressed to (without padding bits)
+     */
+    public CompressedBlock(long offset, long characterCount, long payloadBits) {
+        this.offset = offset;
+        this.characterCount = characterCount;
+        this.payloadBits = payloadBits;
+    }
+    
+    /**
+     * Returns the position of the block's first byte in the compressed file
+     * @return the offset in bytes
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+    
+    /**
+     * Returns the number of symbols (characters or bytes) in the block
+     * @return the number of symbols
+     */
+    public long getCharacterCount() {
+        return this.characterCount;
+    }
+    
+    /**
+     * Returns the number of bits in the block's payload (without padding bits)
+     * @return the number of payload bits
+     */
+    public long getPayloadBits() {
+        return this.payloadBits;
+    }
+    
+    /**
+     * Returns the number of bytes the block occupies in the compressed file
+     * @return the number of bytes including the padding bits of the last byte
+     */
+    public long getByteCount() {
+        return (this.payloadBits + 7) / 8;
+    }
+    
+    /**
+     * Writes the index entry.
+     * @param out the destination the entry should be written to
+     * @throws java.io.IOException 
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(this.offset);
+        out.writeLong(this.characterCount);
+        out.writeLong(this.payloadBits);
+    }
+    
+    /**
+     * Reads an index entry previously written by {@link #write(DataOutput)}.
+     * @param in the source the entry should be read from
+     * @return the index entry
+     * @throws java.io.IOException if the entry is corrupt
+     */
+    public static CompressedBlock read(DataInput in) throws IOException {
+        long offset = in.readLong();
+        long characterCount = in.readLong();
+        long payloadBits = in.readLong();
+        if (offset < CompressedFile.HEADER_SIZE || characterCount < 0 || payloadBits < 0) {
+            throw new IOException("Corrupt block index");
+        }
+        return new CompressedBlock(offset, characterCount, payloadBits);
+    }
+}
@@ -1,36 +1,185 @@
 package main;
 
-import java.io.Serializable;
-import java.util.BitSet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import huffmanTreeStructure.CoderType;
 
 /**
- * A wrapper class for compressed files that (at the moment) simply contains the
- * BitSet with the compression result. It would also be possible to include a
- * Huffman tree to replace the empty starting tree that the algorithm uses by default.
+ * This class describes the header of a compressed file. The file format is:
+ * <PRE>
+ * magic number           4 bytes  "AHUF"
+ * version                1 byte
+ * coder                  1 byte   the id of the adaptive Huffman coder (see {@link CoderType})
+ * symbol type            1 byte   the id of the kind of symbols (see {@link SymbolType})
+ * number of symbols      8 bytes
+ * number of payload bits 8 bytes
+ * number of blocks       4 bytes  0 if the file has not been written in block mode
+ * model                  4 bytes  the id of the model the coder started with (see {@link ModelStore}),
+ *                                 0 if it started with an empty tree or an unnamed model
+ * rescale limit          4 bytes  the root's weight at which the coder halves all weights
+ * payload                the Huffman-coded bits, the last byte padded with 0-bits
+ * </PRE>
+ * All numbers are stored in big-endian byte order. The number of symbols (characters
+ * or bytes) tells the {@link Decoder} when to stop, the number of payload bits lets it
+ * recognize truncated files.
+ * In block mode, the payload consists of independently compressed blocks, each of
+ * them starting at a byte boundary, and the number of payload bits is the sum of
+ * their payload bits. The file ends with the block index: a {@link CompressedBlock}
+ * entry for every block.
  * @author Raphael Brandis
  */
-public class CompressedFile implements Serializable {
-    private BitSet bits;
+public class CompressedFile {
+    /**
+     * The magic number every compressed file starts with
+     */
+    public static final int MAGIC = 0x41485546;
+    
+    /**
+     * The version of the file format written by the {@link Encoder}
+     */
+    public static final int VERSION = 6;
+    
+    /**
+     * The size of the header in bytes
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 8 + 8 + 4 + 4 + 4;
+    
+    private CoderType coderType;
+    private SymbolType symbolType;
+    private long characterCount;
+    private long payloadBits;
+    private int blockCount;
+    private int modelId;
+    private int rescaleLimit;
     
     /**
-     * Constructor for CompressedFiles
-     * @param bits the file's contents compressed using the {@link Encoder}
+     * Constructor for CompressedFile headers
+     * @param coderType the adaptive Huffman coder the payload was compressed with
+     * @param symbolType the kind of symbols the original file was compressed as
+     * @param characterCount the number of symbols in the original file
+     * @param payloadBits the number of bits the {@link Encoder} has written for these symbols
+     * @param blockCount the number of blocks in the block index or 0 if there is none
+     * @param modelId the id of the model the coder started with or 0 if there is none
+     * @param rescaleLimit the root's weight at which the coder halves all weights
      */
-    public CompressedFile(BitSet bits) {
-        this.bits = bits;
+    public CompressedFile(CoderType coderType, SymbolType symbolType, long characterCount, long payloadBits, int blockCount, int modelId, int rescaleLimit) {
+        this.coderType = coderType;
+        this.symbolType = symbolType;
+        this.characterCount = characterCount;
+        this.payloadBits = payloadBits;
+        this.blockCount = blockCount;
+        this.modelId = modelId;
+        this.rescaleLimit = rescaleLimit;
     }
     
     /**
-     * Returns the BitSet containing the compressed data
-     * @return the BitSet containing the compressed data
+     * Returns the adaptive Huffman coder the payload was compressed with
+     * @return the coder's type
      */
-    public BitSet getBits() {
-        return this.bits;
+    public CoderType getCoderType() {
+        return this.coderType;
     }
     
-    /*
-     public void setBits(BitSet bits) {
-        this.bits = bits;
+    /**
+     * Returns the kind of symbols the original file was compressed as
+     * @return the symbol type
+     */
+    public SymbolType getSymbolType() {
+        return this.symbolType;
+    }
+    
+    /**
+     * Returns the number of symbols (characters or bytes) in the original file
+     * @return the number of symbols
+     */
+    public long getCharacterCount() {
+        return this.characterCount;
     }
+    
+    /**
+     * Returns the number of bits in the compressed payload (without padding bits)
+     * @return the number of payload bits
      */
+    public long getPayloadBits() {
+        return this.payloadBits;
+    }
+    
+    /**
+     * Returns the number of entries in the block index at the end of the file
+     * @return the number of blocks or 0 if the file has not been written in block mode
+     */
+    public int getBlockCount() {
+        return this.blockCount;
+    }
+    
+    /**
+     * Returns the id of the model the coder started with (see {@link ModelStore})
+     * @return the model's id or 0 if the file does not name a model
+     */
+    public int getModelId() {
+        return this.modelId;
+    }
+    
+    /**
+     * Returns the root's weight at which the coder halves all weights (see
+     * {@link huffmanTreeStructure.AdaptiveHuffmanCoder#setRescaleLimit(int)})
+     * @return the root's maximum weight
+     */
+    public int getRescaleLimit() {
+        return this.rescaleLimit;
+    }
+    
+    /**
+     * Writes the header.
+     * @param out the destination the header should be written to
+     * @throws java.io.IOException 
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(this.coderType.getId());
+        out.writeByte(this.symbolType.getId());
+        out.writeLong(this.characterCount);
+        out.writeLong(this.payloadBits);
+        out.writeInt(this.blockCount);
+        out.writeInt(this.modelId);
+        out.writeInt(this.rescaleLimit);
+    }
+    
+    /**
+     * Reads and checks a header previously written by {@link #write(DataOutput)}.
+     * @param in the source the header should be read from
+     * @return the header
+     * @throws java.io.IOException if the data is not a compressed file of a supported version
+     */
+    public static CompressedFile read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a compressed file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported file format version: " + version);
+        }
+        
+        CoderType coderType;
+        SymbolType symbolType;
+        try {
+            coderType = CoderType.fromId(in.readUnsignedByte());
+            symbolType = SymbolType.fromId(in.readUnsignedByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        
+        long characterCount = in.readLong();
+        long payloadBits = in.readLong();
+        int blockCount = in.readInt();
+        int modelId = in.readInt();
+        int rescaleLimit = in.readInt();
+        if (characterCount < 0 || payloadBits < 0 || blockCount < 0 || modelId < 0 || rescaleLimit < 2) {
+            throw new IOException("Corrupt file header");
+        }
+        return new CompressedFile(coderType, symbolType, characterCount, payloadBits, blockCount, modelId, rescaleLimit);
+    }
 }
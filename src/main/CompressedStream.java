@@ -0,0 +1,158 @@
+package main;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import huffmanTreeStructure.CoderType;
+
+/**
+ * This class describes the header of a compressed stream written by a
+ * {@link StreamEncoder}. Unlike a {@link CompressedFile}, a stream is written before
+ * its length is known, so it ends with a marker instead. The stream format is:
+ * <PRE>
+ * magic number           4 bytes  "AHUS"
+ * version                1 byte
+ * coder                  1 byte   the id of the adaptive Huffman coder (see {@link CoderType})
+ * symbol type            1 byte   the id of the kind of symbols (see {@link SymbolType})
+ * model                  4 bytes  the id of the model the coder started with (see {@link ModelStore}),
+ *                                 0 if it started with an empty tree or an unnamed model
+ * rescale limit          4 bytes  the root's weight at which the coder halves all weights
+ * payload                the Huffman-coded bits followed by the code of the NYT node and
+ *                        the escape {@link #END_ESCAPE}, the last byte padded with 0-bits
+ * </PRE>
+ * All numbers are stored in big-endian byte order. Within the payload, a new symbol
+ * follows the code of the NYT node as in a file, except that a new byte is preceded by
+ * a 0-bit. An escape follows the code of the NYT node instead of a new symbol (see
+ * {@link SymbolType#writeEscape(int, bitIO.BitOutputStream)}); it does not change the
+ * coder. The escape {@link #SYNC_ESCAPE} may occur anywhere in the payload: like the
+ * end of the stream, it is followed by 0-bits up to the next byte, so the bytes up to
+ * there contain every symbol written before it. The coder continues with the same
+ * tree afterwards.
+ * @author Raphael Brandis
+ */
+public class CompressedStream {
+    /**
+     * The magic number every compressed stream starts with
+     */
+    public static final int MAGIC = 0x41485553;
+    
+    /**
+     * The version of the stream format written by the {@link StreamEncoder}
+     */
+    public static final int VERSION = 1;
+    
+    /**
+     * The size of the header in bytes
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 4 + 4;
+    
+    /**
+     * The escape that ends the payload of a stream
+     */
+    public static final int END_ESCAPE = 0;
+    
+    /**
+     * The escape that marks a sync flush point, after which the payload continues at
+     * the next byte (see {@link StreamEncoder#syncFlush()})
+     */
+    public static final int SYNC_ESCAPE = 1;
+    
+    private CoderType coderType;
+    private SymbolType symbolType;
+    private int modelId;
+    private int rescaleLimit;
+    
+    /**
+     * Constructor for CompressedStream headers
+     * @param coderType the adaptive Huffman coder the payload is compressed with
+     * @param symbolType the kind of symbols the input is compressed as
+     * @param modelId the id of the model the coder started with or 0 if there is none
+     * @param rescaleLimit the root's weight at which the coder halves all weights
+     */
+    public CompressedStream(CoderType coderType, SymbolType symbolType, int modelId, int rescaleLimit) {
+        this.coderType = coderType;
+        this.symbolType = symbolType;
+        this.modelId = modelId;
+        this.rescaleLimit = rescaleLimit;
+    }
+    
+    /**
+     * Returns the adaptive Huffman coder the payload is compressed with
+     * @return the coder's type
+     */
+    public CoderType getCoderType() {
+        return this.coderType;
+    }
+    
+    /**
+     * Returns the kind of symbols the input is compressed as
+     * @return the symbol type
+     */
+    public SymbolType getSymbolType() {
+        return this.symbolType;
+    }
+    
+    /**
+     * Returns the id of the model the coder started with (see {@link ModelStore})
+     * @return the model's id or 0 if the stream does not name a model
+     */
+    public int getModelId() {
+        return this.modelId;
+    }
+    
+    /**
+     * Returns the root's weight at which the coder halves all weights (see
+     * {@link huffmanTreeStructure.AdaptiveHuffmanCoder#setRescaleLimit(int)})
+     * @return the root's maximum weight
+     */
+    public int getRescaleLimit() {
+        return this.rescaleLimit;
+    }
+    
+    /**
+     * Writes the header.
+     * @param out the destination the header should be written to
+     * @throws java.io.IOException 
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(this.coderType.getId());
+        out.writeByte(this.symbolType.getId());
+        out.writeInt(this.modelId);
+        out.writeInt(this.rescaleLimit);
+    }
+    
+    /**
+     * Reads and checks a header previously written by {@link #write(DataOutput)}.
+     * @param in the source the header should be read from
+     * @return the header
+     * @throws java.io.IOException if the data is not a compressed stream of a supported version
+     */
+    public static CompressedStream read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a compressed stream");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported stream format version: " + version);
+        }
+        
+        CoderType coderType;
+        SymbolType symbolType;
+        try {
+            coderType = CoderType.fromId(in.readUnsignedByte());
+            symbolType = SymbolType.fromId(in.readUnsignedByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        
+        int modelId = in.readInt();
+        int rescaleLimit = in.readInt();
+        if (modelId < 0 || rescaleLimit < 2) {
+            throw new IOException("Corrupt stream header");
+        }
+        return new CompressedStream(coderType, symbolType, modelId, rescaleLimit);
+    }
+}
@@ -0,0 +1,136 @@
+package main;
+
+import huffmanTreeStructure.CoderMetrics;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class adds up the metrics of all streams an {@link Encoder} or a {@link Decoder}
+ * has processed: the counters of their coders (see {@link CoderMetrics}), the number
+ * of bytes and bits and the time spent on I/O and on modelling. The metrics are only
+ * collected if {@link CoderMetrics#ENABLED}; otherwise all of them stay 0 and the
+ * Encoder and the Decoder do not even read the clock.
+ * The metrics can be published as an MXBean (see {@link #registerMBean(String)}).
+ * CompressionMetrics may be used by several threads at once.
+ * @author Raphael Brandis
+ */
+public class CompressionMetrics implements CompressionMetricsMXBean {
+    private CoderMetrics coders = new CoderMetrics();
+    private long streamCount;
+    private long uncompressedBytes;
+    private long compressedBits;
+    private long nanos;
+    private long ioNanos;
+    
+    /**
+     * Adds the counters of a coder that has finished a stream or a block.
+     * @param metrics the coder's metrics
+     */
+    public synchronized void addCoder(CoderMetrics metrics) {
+        this.coders.add(metrics);
+    }
+    
+    /**
+     * Adds a stream that has been processed.
+     * @param uncompressedBytes the number of uncompressed bytes read or written
+     * @param compressedBits the number of compressed bits written or read
+     * @param nanos the time the whole stream took in nanoseconds
+     * @param ioNanos the part of that time spent on reading and writing in nanoseconds
+     */
+    public synchronized void addStream(long uncompressedBytes, long compressedBits, long nanos, long ioNanos) {
+        this.streamCount++;
+        this.uncompressedBytes += uncompressedBytes;
+        this.compressedBits += compressedBits;
+        this.nanos += nanos;
+        this.ioNanos += ioNanos;
+    }
+    
+    /**
+     * Publishes the metrics on the platform MBean server under the name
+     * "adaptiveHuffman:type=CompressionMetrics,name=" + the given name.
+     * @param name the name distinguishing these metrics, e.g. "encoder"
+     * @throws javax.management.JMException if the name is invalid or already in use
+     */
+    public void registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("adaptiveHuffman:type=CompressionMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+    
+    public synchronized long getStreamCount() {
+        return this.streamCount;
+    }
+    
+    public synchronized long getSymbolCount() {
+        return this.coders.getSymbolCount();
+    }
+    
+    public synchronized long getEscapeCount() {
+        return this.coders.getEscapeCount();
+    }
+    
+    public synchronized double getSwapsPerSymbol() {
+        return perSymbol(this.coders.getSwapCount());
+    }
+    
+    public synchronized double getUpdatedNodesPerSymbol() {
+        return perSymbol(this.coders.getUpdatedNodeCount());
+    }
+    
+    public synchronized double getAverageCodeLength() {
+        return perSymbol(this.coders.getCodeBitCount());
+    }
+    
+    public synchronized int getMaxCodeLength() {
+        return this.coders.getMaxCodeLength();
+    }
+    
+    public synchronized long getUncompressedBytes() {
+        return this.uncompressedBytes;
+    }
+    
+    public synchronized long getCompressedBits() {
+        return this.compressedBits;
+    }
+    
+    public synchronized double getBytesPerSecond() {
+        return (this.nanos == 0) ? 0 : this.uncompressedBytes * 1e9 / this.nanos;
+    }
+    
+    public synchronized double getBitsPerSecond() {
+        return (this.nanos == 0) ? 0 : this.compressedBits * 1e9 / this.nanos;
+    }
+    
+    public synchronized long getIoMillis() {
+        return this.ioNanos / 1000000;
+    }
+    
+    public synchronized long getModellingMillis() {
+        return Math.max(0, this.nanos - this.ioNanos) / 1000000;
+    }
+    
+    public synchronized void reset() {
+        this.coders.clear();
+        this.streamCount = 0;
+        this.uncompressedBytes = 0;
+        this.compressedBits = 0;
+        this.nanos = 0;
+        this.ioNanos = 0;
+    }
+    
+    /**
+     * Returns a summary of the metrics, e.g. for log files.
+     * @return the summary
+     */
+    public synchronized String toString() {
+        return String.format("%d streams, %d symbols, %d escapes, %.2f swaps / symbol, %.2f updated nodes / symbol, "
+                + "%.2f bits / code, max. code length %d, %.1f MB/s, %.1f Mbit/s, %d ms I/O, %d ms modelling",
+                this.streamCount, this.getSymbolCount(), this.getEscapeCount(), this.getSwapsPerSymbol(), this.getUpdatedNodesPerSymbol(),
+                this.getAverageCodeLength(), this.getMaxCodeLength(), this.getBytesPerSecond() / 1e6, this.getBitsPerSecond() / 1e6,
+                this.getIoMillis(), this.getModellingMillis());
+    }
+    
+    private double perSymbol(long count) {
+        return (this.coders.getSymbolCount() == 0) ? 0 : (double) count / this.coders.getSymbolCount();
+    }
+}
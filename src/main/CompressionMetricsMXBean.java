@@ -0,0 +1,93 @@
+package main;
+
+/**
+ * The management interface of {@link CompressionMetrics}, through which JMX clients
+ * like JConsole read the metrics of an {@link Encoder} or a {@link Decoder}.
+ * @author Raphael Brandis
+ */
+public interface CompressionMetricsMXBean {
+    /**
+     * Returns the number of files or ranges that have been compressed or decompressed.
+     * @return the number of streams
+     */
+    long getStreamCount();
+    
+    /**
+     * Returns the number of symbols that have been coded.
+     * @return the number of symbols
+     */
+    long getSymbolCount();
+    
+    /**
+     * Returns the number of new symbols, which have been escaped by the NYT node's code.
+     * @return the number of NYT escapes
+     */
+    long getEscapeCount();
+    
+    /**
+     * Returns the average number of node swaps per symbol.
+     * @return the swaps per symbol
+     */
+    double getSwapsPerSymbol();
+    
+    /**
+     * Returns the average number of nodes whose weight has been incremented per symbol.
+     * @return the updated nodes per symbol
+     */
+    double getUpdatedNodesPerSymbol();
+    
+    /**
+     * Returns the average length of the Huffman codes, including the NYT node's codes.
+     * @return the average code length in bits
+     */
+    double getAverageCodeLength();
+    
+    /**
+     * Returns the length of the longest code, i.e. the depth of the deepest leaf that
+     * has been coded.
+     * @return the maximum code length in bits
+     */
+    int getMaxCodeLength();
+    
+    /**
+     * Returns the number of uncompressed bytes that have been read or written.
+     * @return the number of bytes
+     */
+    long getUncompressedBytes();
+    
+    /**
+     * Returns the number of compressed bits that have been written or read.
+     * @return the number of bits
+     */
+    long getCompressedBits();
+    
+    /**
+     * Returns the uncompressed bytes per second of processing time.
+     * @return the throughput in bytes per second
+     */
+    double getBytesPerSecond();
+    
+    /**
+     * Returns the compressed bits per second of processing time.
+     * @return the throughput in bits per second
+     */
+    double getBitsPerSecond();
+    
+    /**
+     * Returns the time spent on reading and writing files.
+     * @return the I/O time in milliseconds
+     */
+    long getIoMillis();
+    
+    /**
+     * Returns the processing time that has not been spent on reading and writing files,
+     * i.e. mostly on coding the symbols and updating the coders.
+     * @return the modelling time in milliseconds
+     */
+    long getModellingMillis();
+    
+    /**
+     * Sets all metrics to 0.
+     */
+    void reset();
+}
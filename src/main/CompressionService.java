@@ -0,0 +1,202 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class compresses and decompresses many independent files at once on a fixed
+ * number of threads. Files that are submitted while all threads are busy wait in a
+ * queue. The service copies the settings of the Encoder and the Decoder it is given;
+ * the copies are shared by all threads and take their coders from a {@link CoderPool}
+ * of the service, so a thread reuses the coder of its previous stream instead of
+ * creating a new one.
+ * Every stream is described by a {@link StreamResult}; the service adds them up to
+ * the aggregate throughput. A CompressionService may be used by several threads at
+ * once.
+ * Encoders and Decoders in block mode start threads of their own for every file, so
+ * a service is usually given an Encoder that compresses files as a single stream.
+ * @author Raphael Brandis
+ */
+public class CompressionService {
+    private Encoder encoder;
+    private Decoder decoder;
+    private ExecutorService executor;
+    
+    // the statistics of the streams that are done
+    private long submittedCount;
+    private long streamCount;
+    private long uncompressedBytes;
+    private long compressedBytes;
+    private long firstSubmission;
+    private long lastCompletion;
+    
+    /**
+     * Constructor for CompressionServices. The settings of the given Encoder and
+     * Decoder are copied, so they are not changed and may be used further on their own;
+     * the copies are given a {@link CoderPool} keeping one coder per thread.
+     * @param encoder the Encoder whose settings are used to compress the files
+     * @param decoder the Decoder whose settings are used to decompress the files
+     * @param threadCount the number of files that are processed at once
+     */
+    public CompressionService(Encoder encoder, Decoder decoder, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threadCount);
+        }
+        CoderPool coders = new CoderPool(threadCount);
+        this.encoder = new Encoder(encoder);
+        this.encoder.setCoderPool(coders);
+        this.decoder = new Decoder(decoder);
+        this.decoder.setCoderPool(coders);
+        this.executor = Executors.newFixedThreadPool(threadCount);
+    }
+    
+    /**
+     * Submits a file that should be compressed (see {@link Encoder#compressFile(String, String)}).
+     * @param inputFilename path to the file that should be compressed
+     * @param outputFilename the path the compressed file should be written to
+     * @return the result, which throws an ExecutionException caused by the IOException
+     * if the file cannot be compressed
+     */
+    public Future<StreamResult> compress(String inputFilename, String outputFilename) {
+        return this.submit(new Stream(inputFilename, outputFilename, true));
+    }
+    
+    /**
+     * Submits a file that should be decompressed (see {@link Decoder#decompressFile(String, String)}).
+     * @param inputFilename path to a file that was previously created using the {@link Encoder} class
+     * @param outputFilename the path the decompressed file should be written to
+     * @return the result, which throws an ExecutionException caused by the IOException
+     * if the file cannot be decompressed
+     */
+    public Future<StreamResult> decompress(String inputFilename, String outputFilename) {
+        return this.submit(new Stream(inputFilename, outputFilename, false));
+    }
+    
+    /**
+     * Returns the number of streams that have been compressed or decompressed
+     * successfully.
+     * @return the number of streams
+     */
+    public synchronized long getStreamCount() {
+        return this.streamCount;
+    }
+    
+    /**
+     * Returns the number of uncompressed bytes of all streams that are done, i.e. the
+     * size of the files that have been compressed and of the files that have been
+     * decompressed.
+     * @return the number of bytes
+     */
+    public synchronized long getUncompressedBytes() {
+        return this.uncompressedBytes;
+    }
+    
+    /**
+     * Returns the number of compressed bytes of all streams that are done.
+     * @return the number of bytes
+     */
+    public synchronized long getCompressedBytes() {
+        return this.compressedBytes;
+    }
+    
+    /**
+     * Returns the aggregate throughput: the uncompressed bytes of all streams that are
+     * done divided by the time from the first submission until the last stream was done.
+     * @return the throughput in bytes per second or 0 if no stream is done yet
+     */
+    public synchronized double getThroughput() {
+        if (this.streamCount == 0) {
+            return 0;
+        }
+        return this.uncompressedBytes * 1e9 / (this.lastCompletion - this.firstSubmission);
+    }
+    
+    /**
+     * Returns the metrics of all files the service has compressed. They are only
+     * collected if {@link huffmanTreeStructure.CoderMetrics#ENABLED}.
+     * @return the metrics
+     */
+    public CompressionMetrics getCompressionMetrics() {
+        return this.encoder.getMetrics();
+    }
+    
+    /**
+     * Returns the metrics of all files the service has decompressed. They are only
+     * collected if {@link huffmanTreeStructure.CoderMetrics#ENABLED}.
+     * @return the metrics
+     */
+    public CompressionMetrics getDecompressionMetrics() {
+        return this.decoder.getMetrics();
+    }
+    
+    /**
+     * Lets the submitted streams finish, but does not accept new ones.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+    
+    /**
+     * Waits until all submitted streams are done after {@link #shutdown()} has been called.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all streams are done, false if the timeout elapsed before
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+    
+    private Future<StreamResult> submit(Stream stream) {
+        synchronized (this) {
+            if (this.submittedCount++ == 0) {
+                this.firstSubmission = stream.submission;
+            }
+        }
+        return this.executor.submit(stream);
+    }
+    
+    // adds a stream that is done to the statistics
+    private synchronized void add(StreamResult result, boolean compressed, long completion) {
+        this.streamCount++;
+        this.uncompressedBytes += compressed ? result.getInputBytes() : result.getOutputBytes();
+        this.compressedBytes += compressed ? result.getOutputBytes() : result.getInputBytes();
+        if (this.streamCount == 1 || completion > this.lastCompletion) {
+            this.lastCompletion = completion;
+        }
+    }
+    
+    // compresses or decompresses a file on one of the service's threads
+    private class Stream implements Callable<StreamResult> {
+        private String inputFilename;
+        private String outputFilename;
+        private boolean compress;
+        private long submission = System.nanoTime();
+        
+        private Stream(String inputFilename, String outputFilename, boolean compress) {
+            this.inputFilename = inputFilename;
+            this.outputFilename = outputFilename;
+            this.compress = compress;
+        }
+        
+        public StreamResult call() throws IOException {
+            long start = System.nanoTime();
+            if (this.compress) {
+                CompressionService.this.encoder.compressFile(this.inputFilename, this.outputFilename);
+            } else {
+                CompressionService.this.decoder.decompressFile(this.inputFilename, this.outputFilename);
+            }
+            long end = System.nanoTime();
+            
+            StreamResult result = new StreamResult(this.inputFilename, this.outputFilename, new File(this.inputFilename).length(),
+                    new File(this.outputFilename).length(), end - this.submission, end - start);
+            CompressionService.this.add(result, this.compress, end);
+            return result;
+        }
+    }
+}
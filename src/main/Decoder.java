@@ -1,135 +1,540 @@
 package main;
 
-import huffmanTreeStructure.HuffmanTree;
+import bitIO.BitInputStream;
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.CoderMetrics;
+import huffmanTreeStructure.CoderState;
+import huffmanTreeStructure.CoderType;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
 import java.io.FileInputStream;
-import java.io.ObjectInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.RandomAccessFile;
+import java.io.OutputStream;
 import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.BufferedWriter;
-
-import java.util.BitSet;
-import java.util.Stack;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class decompresses files previosly compressed by the {@link Encoder}.
+ * Files written in block mode are decompressed in parallel, each block with a new
+ * adaptive Huffman tree. Their block index also allows to decompress only the blocks
+ * containing a given range of symbols.
+ * Files compressed with a model have to be decompressed by a Decoder using the same
+ * model or a {@link ModelStore} containing it.
+ * The compressed file is read through a FileChannel. Characters are encoded in UTF-8
+ * directly into a byte buffer, which {@link #decompressFile(String, String)} writes
+ * to its output file through a FileChannel.
+ * Streams written by a {@link StreamEncoder} are decompressed chunk by chunk as they
+ * arrive (see {@link #newStream()}).
+ * If {@link CoderMetrics#ENABLED}, the Decoder collects metrics of all files and
+ * ranges it decompresses (see {@link #getMetrics()}).
  * @author Raphael Brandis
  */
 public class Decoder {
+    // the number of symbols decoded at once outside of block mode
+    private static final int CHUNK_SIZE = 8192;
+    
+    // the size of the buffer the decompressed symbols are written to
+    private static final int BUFFER_SIZE = 8192;
+    
+    // the coder every stream or block starts with a copy of, null for an empty tree
+    private AdaptiveHuffmanCoder model;
+    private ModelStore models;
+    // the pool empty coders are taken from, null if every stream gets a new coder
+    private CoderPool coders;
+    private CompressionMetrics metrics = new CompressionMetrics();
+    
+    /**
+     * Constructor for Decoders of files that have been compressed with an empty tree
+     */
+    public Decoder() {
+    }
+    
+    /**
+     * Constructor for Decoders of files that have been compressed with a model
+     * @param model the state the {@link Encoder}'s coder started with
+     */
+    public Decoder(CoderState model) {
+        this.model = model.getCoderType().createCoder(model);
+    }
+    
+    /**
+     * Constructor for Decoders that look up the model a file names in the given store
+     * (files without a model are decompressed as well)
+     * @param models the store containing the models
+     */
+    public Decoder(ModelStore models) {
+        this.models = models;
+    }
+    
+    /**
+     * Constructor for Decoders with the same settings as the given one, e.g. for a
+     * {@link CompressionService}; the model and the model store are shared, the metrics
+     * start at 0
+     * @param decoder the Decoder whose settings should be copied
+     */
+    Decoder(Decoder decoder) {
+        this.model = decoder.model;
+        this.models = decoder.models;
+        this.coders = decoder.coders;
+    }
+    
+    /**
+     * Lets the Decoder take the coders of its streams and blocks from the given pool and
+     * give them back afterwards instead of creating a new coder every time (see
+     * {@link Encoder#setCoderPool(CoderPool)}).
+     * @param coders the pool, which may be shared with other Encoders and Decoders, or null
+     */
+    public void setCoderPool(CoderPool coders) {
+        this.coders = coders;
+    }
+    
+    /**
+     * Returns the metrics of all files and ranges the Decoder has decompressed. They are
+     * only collected if {@link CoderMetrics#ENABLED}.
+     * @return the metrics
+     */
+    public CompressionMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * Starts decompressing a stream written by a {@link StreamEncoder}, whose bytes are
+     * passed in chunks. The stream's model is looked up like a file's.
+     * @return the StreamDecoder
+     */
+    public StreamDecoder newStream() {
+        return new StreamDecoder(this);
+    }
+    
+    /**
+     * Continues decompressing a stream at a flush point, e.g. after a restart. The
+     * StreamDecoder does not expect a header; the first chunk passed to it has to start
+     * with the first byte following the flush point.
+     * @param header the header of the stream (see {@link StreamDecoder#getHeader()})
+     * @param state a snapshot taken by {@link StreamDecoder#getState()} or
+     * {@link StreamEncoder#getState()} at the flush point
+     * @return the StreamDecoder
+     * @throws IllegalArgumentException if the snapshot has been taken of another type of coder
+     */
+    public StreamDecoder resumeStream(CompressedStream header, CoderState state) {
+        AdaptiveHuffmanCoder tree = header.getCoderType().createCoder(state);
+        tree.setRescaleLimit(header.getRescaleLimit());
+        return new StreamDecoder(this, header, tree);
+    }
+    
     /**
      * Takes in two filenames / -paths, reads the first file, decompresses it and
      * writes the result to the second file.
      * @param inputFilename path to a file that was previously created using the {@link Encoder} class
      * @param outputFilename the path the decompressed file should be written to
      * @throws java.io.IOException 
-     * @throws java.lang.ClassNotFoundException 
      */
-    public void decompressFile(String inputFilename, String outputFilename) throws IOException, ClassNotFoundException {
-        // read the file and deserialize the CompressedFile object
-        ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(inputFilename));
-        CompressedFile compressedFile = (CompressedFile) inputStream.readObject();
-        inputStream.close();
+    public void decompressFile(String inputFilename, String outputFilename) throws IOException {
+        FileChannel fileInput = new FileInputStream(inputFilename).getChannel();
+        try {
+            CompressedFile header = readHeader(fileInput);
+            FileChannel fileOutput = new FileOutputStream(outputFilename).getChannel();
+            try {
+                this.decompressRange(inputFilename, fileInput, header, 0, Long.MAX_VALUE, new SymbolOutput(fileOutput, header.getSymbolType()));
+            } finally {
+                fileOutput.close();
+            }
+        } finally {
+            fileInput.close();
+        }
+    }
+    
+    /**
+     * Reads a file, decompresses the given range of symbols and writes them to the
+     * given OutputStream, characters in UTF-8 and bytes as they are. If the file has
+     * been written in block mode, only the blocks containing the range are
+     * decompressed, otherwise all symbols up to the end of the range.
+     * @param inputFilename path to a file that was previously created using the {@link Encoder} class
+     * @param firstCharacter the position of the first symbol (character or byte) that should be written
+     * @param characterCount the maximum number of symbols that should be written
+     * @param out the destination of the symbols (it is flushed, but not closed)
+     * @throws java.io.IOException 
+     */
+    public void decompressRange(String inputFilename, long firstCharacter, long characterCount, OutputStream out) throws IOException {
+        if (firstCharacter < 0 || characterCount < 0) {
+            throw new IllegalArgumentException("Invalid range: " + firstCharacter + ", " + characterCount);
+        }
+        
+        FileChannel fileInput = new FileInputStream(inputFilename).getChannel();
+        try {
+            CompressedFile header = readHeader(fileInput);
+            this.decompressRange(inputFilename, fileInput, header, firstCharacter, characterCount, new SymbolOutput(out, header.getSymbolType()));
+        } finally {
+            fileInput.close();
+        }
+    }
+    
+    // decompresses the payload following the header while reading it and writes the
+    // original symbols to the given destination; the caller closes the channel
+    private void decompressRange(String inputFilename, FileChannel fileInput, CompressedFile header, long firstCharacter, long characterCount, SymbolOutput output) throws IOException {
+        long startTime = CoderMetrics.ENABLED ? System.nanoTime() : 0;
+        long lastCharacter = Math.min(header.getCharacterCount(), firstCharacter + Math.min(characterCount, Long.MAX_VALUE - firstCharacter));
+        AdaptiveHuffmanCoder model = this.getModel(header.getCoderType(), header.getModelId());
+        
+        // the time spent on reading is only measured for the metrics
+        TimedChannel timedInput = new TimedChannel(fileInput);
+        ReadableByteChannel channel = CoderMetrics.ENABLED ? timedInput : fileInput;
+        long compressedBits;
+        if (header.getBlockCount() == 0) {
+            BitInputStream input = new BitInputStream(channel, header.getPayloadBits());
+            AdaptiveHuffmanCoder tree = this.createCoder(header.getCoderType(), header.getRescaleLimit(), model);
+            
+            // the symbols are decoded in chunks, the ones in front of the range are dropped
+            int[] characters = new int[CHUNK_SIZE];
+            long i = 0;
+            try {
+                while (i < lastCharacter) {
+                    int length = (int) Math.min(characters.length, lastCharacter - i);
+                    for (int j = 0; j < length; j++) {
+                        characters[j] = decompressCharacter(input, tree, header.getSymbolType());
+                    }
+                    
+                    int start = (int) Math.max(0, Math.min(length, firstCharacter - i));
+                    output.write(characters, start, length - start);
+                    i += length;
+                }
+            } finally {
+                this.releaseCoder(tree, model);
+            }
+            compressedBits = header.getPayloadBits() - input.getBitsLeft();
+        } else {
+            compressedBits = this.decompressBlocks(inputFilename, header, model, firstCharacter, lastCharacter, output);
+        }
+        output.flush();
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addStream(output.byteCount, compressedBits, System.nanoTime() - startTime, timedInput.getNanos() + output.ioNanos);
+        }
+    }
+    
+    // reads and checks the header at the start of a compressed file, leaving the channel
+    // positioned at the payload
+    private static CompressedFile readHeader(FileChannel fileInput) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(CompressedFile.HEADER_SIZE);
+        int n = 0;
+        while (bytes.hasRemaining() && n != -1) {
+            n = fileInput.read(bytes);
+        }
+        return CompressedFile.read(new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.position())));
+    }
+    
+    // returns the model the coder of a file or stream started with or null if it
+    // started with an empty tree
+    AdaptiveHuffmanCoder getModel(CoderType coderType, int modelId) throws IOException {
+        AdaptiveHuffmanCoder model = this.model;
+        if (this.models != null && modelId != 0) {
+            model = this.models.createCoder(modelId);
+        }
         
-        // decompress the file and write the original UTF-8 data to the given destination
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFilename), "UTF-8"));
-        this.decompress(compressedFile, writer);
-        writer.close();
-    }
-    
-    private void decompress(CompressedFile input, Writer writer) throws IOException {
-        BitSet bits = input.getBits();
-        HuffmanTree tree = new HuffmanTree();
-        Stack<Boolean> newChar = new Stack<Boolean>();
-        boolean bit;
-        char decodedCharacter;
-        int i, j, bitsToRead = 0;
+        if (model == null && modelId != 0) {
+            throw new IOException("The data has been compressed with the model " + modelId);
+        } else if (model != null && model.getCoderType() != coderType) {
+            throw new IOException("The data has been compressed with " + coderType + ", the model is for " + model.getCoderType());
+        }
+        return model;
+    }
+    
+    // decompresses the blocks containing the given symbols on as many threads as
+    // there are processors and writes the symbols in their original order
+    // returns the number of payload bits of these blocks
+    private long decompressBlocks(String inputFilename, CompressedFile header, AdaptiveHuffmanCoder model, long firstCharacter, long lastCharacter, SymbolOutput output) throws IOException {
+        CompressedBlock[] index = readBlockIndex(inputFilename, header);
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         
+        // the blocks that are being decompressed; at most two blocks per thread are kept
+        // in memory, so decompressing does not get too far ahead of writing the result
+        Queue<Future<int[]>> pendingBlocks = new ArrayDeque<Future<int[]>>();
+        Queue<Long> pendingBlockStarts = new ArrayDeque<Long>();
+        long payloadBits = 0;
         
-        // read the first UTF-8 character
-        //determine if it is 1, 2, 3 or 4 bytes long at first.
-        for (i = 0; i < 5; i++) {
-            bit = bits.get(i);
-            newChar.push(bit);
-            if (!bit) {
-                break;
+        try {
+            long blockStart = 0;
+            for (CompressedBlock block : index) {
+                long blockEnd = blockStart + block.getCharacterCount();
+                if (blockEnd > firstCharacter && blockStart < lastCharacter) {
+                    pendingBlocks.add(executor.submit(new BlockDecompression(inputFilename, header, model, block)));
+                    pendingBlockStarts.add(blockStart);
+                    payloadBits += block.getPayloadBits();
+                    if (pendingBlocks.size() == 2 * threadCount) {
+                        writeBlock(pendingBlocks.remove(), pendingBlockStarts.remove(), firstCharacter, lastCharacter, output);
+                    }
+                }
+                blockStart = blockEnd;
+            }
+            
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.remove(), pendingBlockStarts.remove(), firstCharacter, lastCharacter, output);
             }
+        } finally {
+            executor.shutdownNow();
+        }
+        return payloadBits;
+    }
+    
+    // waits for the given block to be decompressed and writes its symbols that are
+    // part of the requested range
+    private static void writeBlock(Future<int[]> pendingBlock, long blockStart, long firstCharacter, long lastCharacter, SymbolOutput output) throws IOException {
+        int[] characters;
+        try {
+            characters = pendingBlock.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while decompressing a block", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Decompressing a block failed", e.getCause());
         }
         
-        switch (i) {
-            case 4:
-                bitsToRead = 32;
-                break;
-            case 3:
-                bitsToRead = 24;
-                break;
-            case 2:
-                bitsToRead = 16;
-                break;
-            default:
-                bitsToRead = 8;
-                break;
+        int start = (int) Math.max(0, firstCharacter - blockStart);
+        int end = (int) Math.min(characters.length, lastCharacter - blockStart);
+        output.write(characters, start, end - start);
+    }
+    
+    // reads and checks the block index at the end of a file written in block mode
+    private static CompressedBlock[] readBlockIndex(String inputFilename, CompressedFile header) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(inputFilename, "r");
+        long indexOffset;
+        byte[] bytes;
+        try {
+            // check the size before allocating anything, as the block count may be corrupt
+            long indexBytes = (long) header.getBlockCount() * CompressedBlock.ENTRY_SIZE;
+            if (indexBytes > file.length() - CompressedFile.HEADER_SIZE) {
+                throw new IOException("Unexpected end of the compressed data");
+            }
+            indexOffset = file.length() - indexBytes;
+            bytes = new byte[(int) indexBytes];
+            
+            // read the whole index at once, as RandomAccessFile does not buffer
+            file.seek(indexOffset);
+            file.readFully(bytes);
+        } finally {
+            file.close();
         }
         
-        // read the remaining bits and push them onto the stack
-        for (i = i+1; i < bitsToRead; i++) {
-            newChar.push(bits.get(i));
+        DataInputStream indexInput = new DataInputStream(new ByteArrayInputStream(bytes));
+        CompressedBlock[] index = new CompressedBlock[header.getBlockCount()];
+        long characterCount = 0;
+        for (int i = 0; i < index.length; i++) {
+            index[i] = CompressedBlock.read(indexInput);
+            if (index[i].getOffset() > indexOffset - index[i].getByteCount() || index[i].getCharacterCount() > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt block index");
+            }
+            // every symbol takes at least one bit, so a block cannot hold more symbols than
+            // payload bits; this bounds the buffers the blocks are decompressed into
+            if (index[i].getCharacterCount() > index[i].getPayloadBits()) {
+                throw new IOException("Corrupt block index");
+            }
+            characterCount += index[i].getCharacterCount();
+            if (characterCount > header.getCharacterCount()) {
+                throw new IOException("Corrupt block index");
+            }
+        }
+        if (characterCount != header.getCharacterCount()) {
+            throw new IOException("Corrupt block index");
         }
+        return index;
+    }
+    
+    // creates a coder for a stream or a block, starting with the model if there is one
+    AdaptiveHuffmanCoder createCoder(CoderType coderType, int rescaleLimit, AdaptiveHuffmanCoder model) {
+        AdaptiveHuffmanCoder tree;
+        if (model != null) {
+            tree = model.copy();
+        } else if (this.coders != null) {
+            tree = this.coders.take(coderType);
+        } else {
+            tree = coderType.createCoder();
+        }
+        tree.setRescaleLimit(rescaleLimit);
+        return tree;
+    }
+    
+    // adds up the metrics of a coder that is not needed any more and gives it back
+    // to the pool
+    void releaseCoder(AdaptiveHuffmanCoder tree, AdaptiveHuffmanCoder model) {
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addCoder(tree.getMetrics());
+        }
+        if (model == null && this.coders != null) {
+            this.coders.giveBack(tree);
+        }
+    }
+    
+    private static int decompressCharacter(BitInputStream input, AdaptiveHuffmanCoder tree, SymbolType symbolType) throws IOException {
+        // as long as the tree consists of the NYT node only, this returns its
+        // number without reading any bits, so the first character is handled here as well
+        int nodeNumber = tree.readHuffmanCode(input);
         
-        // convert the stack to a UTF-8 character, add it to the tree and write it to the file
-        decodedCharacter = (char) BitTools.decodeUTF8Character(newChar);
-        tree.addCharacter(decodedCharacter);
-        writer.write(decodedCharacter);
+        if (nodeNumber == -1) {
+            throw new IOException("Unexpected end of the compressed data");
+        } else if (nodeNumber == tree.getNYTNodeNumber()) {
+            // here comes a new symbol, let's read it and add it to the tree
+            int decodedCharacter = symbolType.readNewSymbol(input);
+            tree.addCharacter(decodedCharacter);
+            return decodedCharacter;
+        }
+        return tree.decodeCharacterByNodeNumber(nodeNumber);
+    }
+    
+    // decompresses a block into memory using a tree of its own
+    private class BlockDecompression implements Callable<int[]> {
+        private String inputFilename;
+        private CompressedFile header;
+        private AdaptiveHuffmanCoder model;
+        private CompressedBlock block;
         
+        private BlockDecompression(String inputFilename, CompressedFile header, AdaptiveHuffmanCoder model, CompressedBlock block) {
+            this.inputFilename = inputFilename;
+            this.header = header;
+            this.model = model;
+            this.block = block;
+        }
         
-        // now continue with the rest of the data and ignore the very last bit (see Encoder.compress())
-        for (i = i; i < bits.length()-1; i++) {
-            bit = bits.get(i);
-            int nodeNumber = tree.readHuffmanCodeBit(bit);
-            
-            if (nodeNumber > -1) {
-                if (nodeNumber == tree.getNYTNodeNumber()) {
-                    // here comes a new UTF-8 character, let's read it!
-                    newChar = new Stack<Boolean>();
-                    // determine if it is 1, 2, 3 or 4 bytes long at first.
-                    for (j = 0; j < 5; j++) {
-                        bit = bits.get(++i);
-                        newChar.push(bit);
-                        if (!bit) {
-                            break;
-                        }
+        public int[] call() throws IOException {
+            FileChannel blockInput = new FileInputStream(this.inputFilename).getChannel();
+            try {
+                blockInput.position(this.block.getOffset());
+                BitInputStream input = new BitInputStream(blockInput, this.block.getPayloadBits());
+                AdaptiveHuffmanCoder tree = Decoder.this.createCoder(this.header.getCoderType(), this.header.getRescaleLimit(), this.model);
+                
+                int[] characters = new int[(int) this.block.getCharacterCount()];
+                try {
+                    for (int i = 0; i < characters.length; i++) {
+                        characters[i] = decompressCharacter(input, tree, this.header.getSymbolType());
                     }
-                    
-                    switch (j) {
-                        case 4:
-                            bitsToRead = 32;
-                            break;
-                        case 3:
-                            bitsToRead = 24;
-                            break;
-                        case 2:
-                            bitsToRead = 16;
-                            break;
-                        default:
-                            bitsToRead = 8;
-                            break;
+                } finally {
+                    Decoder.this.releaseCoder(tree, this.model);
+                }
+                return characters;
+            } finally {
+                blockInput.close();
+            }
+        }
+    }
+    
+    // writes the symbols of a file or stream: the code points of text in UTF-8 or the
+    // bytes of anything else
+    static class SymbolOutput {
+        private OutputStream out;
+        private WritableByteChannel channel;
+        private ByteBuffer channelBuffer;
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int length;
+        private boolean text;
+        // the number of bytes written and, only for the metrics, the time spent on it
+        private long byteCount;
+        private long ioNanos;
+        
+        SymbolOutput(OutputStream out, SymbolType symbolType) {
+            this.out = out;
+            this.text = symbolType == SymbolType.TEXT;
+        }
+        
+        // writes to a channel through a direct buffer
+        private SymbolOutput(WritableByteChannel channel, SymbolType symbolType) {
+            this.channel = channel;
+            this.channelBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.text = symbolType == SymbolType.TEXT;
+        }
+        
+        void write(int[] symbols, int offset, int length) throws IOException {
+            byte[] bytes = this.bytes;
+            int n = this.length;
+            if (!this.text) {
+                // bytes are copied as they are
+                int i = offset;
+                while (i < offset + length) {
+                    if (n == BUFFER_SIZE) {
+                        this.length = n;
+                        this.writeBuffer();
+                        n = 0;
                     }
-                    
-                    // read the remaining bits and push them onto the stack
-                    for (j = j + 1; j < bitsToRead; j++) {
-                        newChar.push(bits.get(++i));
+                    int count = Math.min(BUFFER_SIZE - n, offset + length - i);
+                    for (int j = 0; j < count; j++) {
+                        bytes[n + j] = (byte) symbols[i + j];
                     }
-                    
-                    // convert the stack to a UTF-8 character and add it to the tree
-                    decodedCharacter = (char) BitTools.decodeUTF8Character(newChar);
-                    tree.addCharacter(decodedCharacter);
-                } else {
-                    decodedCharacter = tree.decodeCharacterByNodeNumber(nodeNumber);
+                    n += count;
+                    i += count;
+                }
+                this.length = n;
+                return;
+            }
+            
+            for (int i = offset; i < offset + length; i++) {
+                // there is always room for the longest UTF-8 code
+                if (n > BUFFER_SIZE - 4) {
+                    this.length = n;
+                    this.writeBuffer();
+                    n = 0;
                 }
                 
-                // write the decoded character to the file
-                writer.write(decodedCharacter);
+                // ASCII characters are their own UTF-8 code; the code of the other
+                // characters starts with 110, 1110 or 11110 followed by continuation
+                // bytes starting with 10
+                int symbol = symbols[i];
+                if (symbol < 0x80) {
+                    bytes[n++] = (byte) symbol;
+                } else if (symbol < 0x800) {
+                    bytes[n++] = (byte) (0xC0 | (symbol >> 6));
+                    bytes[n++] = (byte) (0x80 | (symbol & 0x3F));
+                } else if (symbol >= Character.MIN_SURROGATE && symbol <= Character.MAX_SURROGATE) {
+                    // a surrogate cannot be encoded in UTF-8, so it is replaced like an
+                    // OutputStreamWriter does; only a corrupt file contains one
+                    bytes[n++] = (byte) '?';
+                } else if (symbol < 0x10000) {
+                    bytes[n++] = (byte) (0xE0 | (symbol >> 12));
+                    bytes[n++] = (byte) (0x80 | ((symbol >> 6) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | (symbol & 0x3F));
+                } else {
+                    bytes[n++] = (byte) (0xF0 | (symbol >> 18));
+                    bytes[n++] = (byte) (0x80 | ((symbol >> 12) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | ((symbol >> 6) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | (symbol & 0x3F));
+                }
+            }
+            this.length = n;
+        }
+        
+        void flush() throws IOException {
+            this.writeBuffer();
+            if (this.out != null) {
+                this.out.flush();
+            }
+        }
+        
+        private void writeBuffer() throws IOException {
+            long start = CoderMetrics.ENABLED ? System.nanoTime() : 0;
+            if (this.channel != null) {
+                this.channelBuffer.clear();
+                this.channelBuffer.put(this.bytes, 0, this.length);
+                this.channelBuffer.flip();
+                while (this.channelBuffer.hasRemaining()) {
+                    this.channel.write(this.channelBuffer);
+                }
+            } else {
+                this.out.write(this.bytes, 0, this.length);
+            }
+            this.byteCount += this.length;
+            this.length = 0;
+            if (CoderMetrics.ENABLED) {
+                this.ioNanos += System.nanoTime() - start;
             }
         }
     }
@@ -1,81 +1,657 @@
 package main;
 
-import huffmanTreeStructure.HuffmanTree;
+import bitIO.BitOutputStream;
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.CoderMetrics;
+import huffmanTreeStructure.CoderState;
+import huffmanTreeStructure.CoderType;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.io.FileInputStream;
-import java.io.ObjectOutputStream;
 import java.io.FileOutputStream;
-
-import java.util.BitSet;
-import java.util.Stack;
+import java.io.OutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class compresses files that can be decompressed using the {@link Decoder}.
+ * Text files are compressed character by character (a supplementary character being a
+ * single symbol), other files byte by byte (see {@link SymbolType}).
+ * In block mode, the input is split into blocks of a fixed number of symbols which
+ * are compressed independently and in parallel, each with its own adaptive Huffman
+ * tree. As every tree has to learn its block's alphabet from scratch, the compressed
+ * file gets slightly larger.
+ * Instead of an empty tree, the coder may start with a model, i.e. the state of a
+ * coder that has already seen similar data (see {@link CoderState} and {@link #train(String)}).
+ * The file can only be decompressed by a {@link Decoder} using the same model. If the
+ * model comes from a {@link ModelStore}, the file names its id.
+ * The input file is mapped into memory and the compressed file is written through a
+ * FileChannel, so no stream or Reader sits between the files and the coder.
+ * Data that arrives in chunks, e.g. network messages, can be compressed as a stream
+ * (see {@link #newStream()}).
+ * If {@link CoderMetrics#ENABLED}, the Encoder collects metrics of all files it
+ * compresses (see {@link #getMetrics()}).
  * @author Raphael Brandis
  * @author Patrick de Lanauze
  */
 public class Encoder {
+    /**
+     * The number of symbols per block recommended for block mode
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    
+    // the number of symbols read at once outside of block mode
+    private static final int CHUNK_SIZE = 8192;
+    
+    // the number of bytes of the input file that are mapped into memory at once
+    private static final int WINDOW_SIZE = 1 << 26;
+    
+    private CoderType coderType;
+    private SymbolType symbolType;
+    private int blockSize;
+    // the coder every stream or block starts with a copy of, null for an empty tree
+    private AdaptiveHuffmanCoder model;
+    private int modelId;
+    private int rescaleLimit = Integer.MAX_VALUE;
+    // the pool empty coders are taken from, null if every stream gets a new coder
+    private CoderPool coders;
+    private CompressionMetrics metrics = new CompressionMetrics();
+    
+    /**
+     * Constructor for Encoders using the FGK algorithm
+     */
+    public Encoder() {
+        this(CoderType.FGK);
+    }
+    
+    /**
+     * Constructor for Encoders that compress text files as a single stream
+     * @param coderType the adaptive Huffman coder that should be used
+     */
+    public Encoder(CoderType coderType) {
+        this(coderType, SymbolType.TEXT, 0);
+    }
+    
+    /**
+     * Constructor for Encoders
+     * @param coderType the adaptive Huffman coder that should be used
+     * @param symbolType whether the input should be compressed as UTF-8 text or as bytes
+     * @param blockSize the number of symbols per block (see {@link #DEFAULT_BLOCK_SIZE})
+     * or 0 if the file should be compressed as a single stream
+     */
+    public Encoder(CoderType coderType, SymbolType symbolType, int blockSize) {
+        if (blockSize < 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.coderType = coderType;
+        this.symbolType = symbolType;
+        this.blockSize = blockSize;
+    }
+    
+    /**
+     * Constructor for Encoders whose coder (in block mode: the coder of every block)
+     * starts with the given model instead of an empty tree
+     * @param model the state the coder should start with; it determines the coder's type
+     * @param symbolType whether the input should be compressed as UTF-8 text or as bytes
+     * @param blockSize the number of symbols per block (see {@link #DEFAULT_BLOCK_SIZE})
+     * or 0 if the file should be compressed as a single stream
+     */
+    public Encoder(CoderState model, SymbolType symbolType, int blockSize) {
+        this(model.getCoderType(), symbolType, blockSize);
+        this.model = model.getCoderType().createCoder(model);
+    }
+    
+    /**
+     * Constructor for Encoders whose coder (in block mode: the coder of every block)
+     * starts with a model from the given store; the compressed file names the model's id
+     * @param models the store containing the model
+     * @param modelId the id of the model the coder should start with; it determines the coder's type
+     * @param symbolType whether the input should be compressed as UTF-8 text or as bytes
+     * @param blockSize the number of symbols per block (see {@link #DEFAULT_BLOCK_SIZE})
+     * or 0 if the file should be compressed as a single stream
+     * @throws java.io.IOException if the model cannot be read
+     */
+    public Encoder(ModelStore models, int modelId, SymbolType symbolType, int blockSize) throws IOException {
+        this(CoderType.FGK, symbolType, blockSize);
+        this.model = models.createCoder(modelId);
+        this.coderType = this.model.getCoderType();
+        this.modelId = modelId;
+    }
+    
+    /**
+     * Constructor for Encoders with the same settings as the given one, e.g. for a
+     * {@link CompressionService}; the model is shared, the metrics start at 0
+     * @param encoder the Encoder whose settings should be copied
+     */
+    Encoder(Encoder encoder) {
+        this(encoder.coderType, encoder.symbolType, encoder.blockSize);
+        this.model = encoder.model;
+        this.modelId = encoder.modelId;
+        this.rescaleLimit = encoder.rescaleLimit;
+        this.coders = encoder.coders;
+    }
+    
+    /**
+     * Sets the root's weight at which the coder halves the weights of all characters and
+     * rebuilds its tree (see {@link AdaptiveHuffmanCoder#setRescaleLimit(int)}). A lower
+     * limit lets the code follow changing statistics faster, e.g. in long log files.
+     * The limit is stored in the compressed file, so the {@link Decoder} uses it as well.
+     * @param limit the root's maximum weight (at least 2, Integer.MAX_VALUE by default)
+     */
+    public void setRescaleLimit(int limit) {
+        if (limit < 2) {
+            throw new IllegalArgumentException("Invalid rescale limit: " + limit);
+        }
+        this.rescaleLimit = limit;
+    }
+    
+    /**
+     * Lets the Encoder take the coders of its streams and blocks from the given pool and
+     * give them back afterwards instead of creating a new coder every time. This helps
+     * if many files are compressed, e.g. by a {@link CompressionService}. Coders that
+     * start with a model are copied from the model as before.
+     * @param coders the pool, which may be shared with other Encoders and Decoders, or null
+     */
+    public void setCoderPool(CoderPool coders) {
+        this.coders = coders;
+    }
+    
+    /**
+     * Returns the metrics of all files the Encoder has compressed. They are only
+     * collected if {@link CoderMetrics#ENABLED}.
+     * @return the metrics
+     */
+    public CompressionMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * Starts compressing a stream whose data is passed in chunks instead of being read
+     * from a file. The stream is compressed with the Encoder's coder type, symbol type,
+     * model and rescale limit, but never in block mode.
+     * @return the StreamEncoder, which has already produced the stream's header
+     * @throws java.io.IOException 
+     */
+    public StreamEncoder newStream() throws IOException {
+        CompressedStream header = new CompressedStream(this.coderType, this.symbolType, this.modelId, this.rescaleLimit);
+        return new StreamEncoder(this, this.createCoder(), this.symbolType, header);
+    }
+    
+    /**
+     * Continues a stream at a flush point, e.g. after a restart. The StreamEncoder does
+     * not write a header; its first bytes follow the ones the original StreamEncoder had
+     * produced up to the flush point, using the Encoder's symbol type and rescale limit.
+     * @param state a snapshot taken by {@link StreamEncoder#getState()}
+     * @return the StreamEncoder
+     * @throws java.io.IOException 
+     * @throws IllegalArgumentException if the snapshot has been taken of another type of coder
+     */
+    public StreamEncoder resumeStream(CoderState state) throws IOException {
+        AdaptiveHuffmanCoder tree = this.coderType.createCoder(state);
+        tree.setRescaleLimit(this.rescaleLimit);
+        return new StreamEncoder(this, tree, this.symbolType, null);
+    }
+    
+    /**
+     * Reads a sample file and returns the state of the coder after it has seen all of
+     * its symbols. Starting with this model, files that are similar to the sample
+     * compress better, especially short ones.
+     * @param inputFilename path to the sample file (ASCII- / UTF-8-encoded unless the
+     * symbol type is {@link SymbolType#BYTES})
+     * @return the model
+     * @throws java.io.IOException 
+     */
+    public CoderState train(String inputFilename) throws IOException {
+        // the code is only needed to update the coder, so it is thrown away
+        OutputStream discardingOutput = new OutputStream() {
+            public void write(int b) {
+            }
+            
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        
+        SymbolInput input = new SymbolInput(inputFilename, this.symbolType);
+        AdaptiveHuffmanCoder tree = this.createCoder();
+        try {
+            BitOutputStream output = new BitOutputStream(discardingOutput);
+            int[] characters = new int[CHUNK_SIZE];
+            int length = input.read(characters);
+            while (length > 0) {
+                for (int i = 0; i < length; i++) {
+                    this.compressCharacter(characters[i], tree, output);
+                }
+                length = input.read(characters);
+            }
+            return tree.getState();
+        } finally {
+            this.releaseCoder(tree);
+            input.close();
+        }
+    }
+    
     /**
      * Takes in two filenames / -paths, reads the first file, compresses it and writes
      * the result to the second file.
-     * @param inputFilename path to an ASCII- / UTF-8-encoded file that should be compressed
+     * @param inputFilename path to the file that should be compressed (ASCII- / UTF-8-encoded
+     * unless the symbol type is {@link SymbolType#BYTES})
      * @param outputFilename the path the compressed file should be written to
      * @throws java.io.IOException 
      */
     public void compressFile(String inputFilename, String outputFilename) throws IOException {
-        // read the file and compress it using the FGK algorithm
-        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFilename), "UTF-8"));
-        CompressedFile file = this.compress(reader);
-        reader.close();
+        long start = CoderMetrics.ENABLED ? System.nanoTime() : 0;
         
-        // serialize the CompressedFile object and write it to the given destination
-        ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(outputFilename));
-        output.writeObject(file);
-        output.close();
+        // the lengths are not known yet, so the payload starts behind the space left
+        // for the header
+        FileChannel fileOutput = new FileOutputStream(outputFilename).getChannel();
+        // the time spent on writing is only measured for the metrics
+        TimedChannel timedOutput = new TimedChannel(fileOutput);
+        SymbolInput input;
+        CompressedFile header;
+        try {
+            fileOutput.position(CompressedFile.HEADER_SIZE);
+            WritableByteChannel channel = CoderMetrics.ENABLED ? timedOutput : fileOutput;
+            
+            // read the file and compress it using the chosen coder while writing the
+            // result to the given destination
+            input = new SymbolInput(inputFilename, this.symbolType);
+            try {
+                if (this.blockSize == 0) {
+                    BitOutputStream output = new BitOutputStream(channel);
+                    long characterCount = this.compress(input, output);
+                    output.close();
+                    header = new CompressedFile(this.coderType, this.symbolType, characterCount, output.getBitCount(), 0, this.modelId, this.rescaleLimit);
+                } else {
+                    // the blocks are compressed into memory, so they are written as a whole
+                    header = this.compressBlocks(input, Channels.newOutputStream(channel));
+                }
+            } finally {
+                input.close();
+            }
+        } finally {
+            fileOutput.close();
+        }
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addStream(input.fileSize, header.getPayloadBits(), System.nanoTime() - start, input.ioNanos + timedOutput.getNanos());
+        }
+        
+        // now write the real header
+        RandomAccessFile file = new RandomAccessFile(outputFilename, "rw");
+        try {
+            header.write(file);
+        } finally {
+            file.close();
+        }
+    }
+    
+    // compresses the blocks on as many threads as there are processors and writes them
+    // and the block index to the given destination in their original order
+    // returns the header describing the blocks
+    private CompressedFile compressBlocks(SymbolInput input, OutputStream output) throws IOException {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        
+        // the blocks that are being compressed; at most two blocks per thread are kept in
+        // memory, so reading the input does not get too far ahead of writing the result
+        Queue<Future<CompressedData>> pendingBlocks = new ArrayDeque<Future<CompressedData>>();
+        List<CompressedBlock> index = new ArrayList<CompressedBlock>();
+        long offset = CompressedFile.HEADER_SIZE;
+        
+        try {
+            int[] characters = new int[this.blockSize];
+            int length = input.read(characters);
+            
+            while (length > 0) {
+                pendingBlocks.add(executor.submit(new BlockCompression(characters, length)));
+                if (pendingBlocks.size() == 2 * threadCount) {
+                    offset = writeBlock(pendingBlocks.remove(), output, offset, index);
+                }
+                
+                characters = new int[this.blockSize];
+                length = input.read(characters);
+            }
+            
+            while (!pendingBlocks.isEmpty()) {
+                offset = writeBlock(pendingBlocks.remove(), output, offset, index);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // the block index follows the last block
+        DataOutputStream indexOutput = new DataOutputStream(new BufferedOutputStream(output));
+        long characterCount = 0;
+        long payloadBits = 0;
+        for (CompressedBlock block : index) {
+            block.write(indexOutput);
+            characterCount += block.getCharacterCount();
+            payloadBits += block.getPayloadBits();
+        }
+        indexOutput.flush();
+        
+        return new CompressedFile(this.coderType, this.symbolType, characterCount, payloadBits, index.size(), this.modelId, this.rescaleLimit);
+    }
+    
+    // waits for the given block to be compressed, writes it at the given offset and adds
+    // it to the index
+    // returns the offset of the next block
+    private static long writeBlock(Future<CompressedData> pendingBlock, OutputStream output, long offset, List<CompressedBlock> index) throws IOException {
+        CompressedData data;
+        try {
+            data = pendingBlock.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while compressing a block", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Compressing a block failed", e.getCause());
+        }
+        
+        data.bytes.writeTo(output);
+        CompressedBlock block = new CompressedBlock(offset, data.characterCount, data.payloadBits);
+        index.add(block);
+        return offset + block.getByteCount();
     }
     
     // adapted from Patrick de Lanauze's HuffmanTreeWriter.write()-method for the static algorithm
-    private CompressedFile compress(Reader input) throws IOException {
-        HuffmanTree tree = new HuffmanTree();
-        BitSet bits = new BitSet();
-        
-        // Iterate over the chars in the reader
-        int value = input.read();
-        int i = 0;
-        
-        while (value != -1) {
-            // Parse the character
-            char c = (char) value;
-            Stack<Boolean> path = new Stack<Boolean>();
+    // returns the number of symbols that were compressed
+    private long compress(SymbolInput input, BitOutputStream output) throws IOException {
+        AdaptiveHuffmanCoder tree = this.createCoder();
+        long characterCount = 0;
+        
+        // Iterate over the symbols in chunks
+        int[] characters = new int[CHUNK_SIZE];
+        try {
+            int length = input.read(characters);
             
-            if (tree.characterExists(c)) {
-                tree.encodeCharacter(c, path);
-            } else {
-                // this will send the current code for the NYT node first and the UTF8-encoded character afterwards
-                BitTools.encodeUTF8Character(value, path);
-                tree.encodeNYTNode(path);
-                // finally add the character to the tree and update the tree structure
-                tree.addCharacter(c);
+            while (length > 0) {
+                for (int i = 0; i < length; i++) {
+                    this.compressCharacter(characters[i], tree, output);
+                }
+                
+                // Prepare the next chunk
+                characterCount += length;
+                length = input.read(characters);
+            }
+        } finally {
+            this.releaseCoder(tree);
+        }
+        return characterCount;
+    }
+    
+    // creates a coder for a stream or a block, starting with the model if there is one
+    private AdaptiveHuffmanCoder createCoder() {
+        AdaptiveHuffmanCoder tree;
+        if (this.model != null) {
+            tree = this.model.copy();
+        } else if (this.coders != null) {
+            tree = this.coders.take(this.coderType);
+        } else {
+            tree = this.coderType.createCoder();
+        }
+        tree.setRescaleLimit(this.rescaleLimit);
+        return tree;
+    }
+    
+    // adds up the metrics of a coder that is not needed any more and gives it back
+    // to the pool
+    void releaseCoder(AdaptiveHuffmanCoder tree) {
+        if (CoderMetrics.ENABLED) {
+            this.metrics.addCoder(tree.getMetrics());
+        }
+        if (this.model == null && this.coders != null) {
+            this.coders.giveBack(tree);
+        }
+    }
+    
+    private void compressCharacter(int c, AdaptiveHuffmanCoder tree, BitOutputStream output) throws IOException {
+        if (tree.characterExists(c)) {
+            tree.encodeCharacter(c, output);
+        } else {
+            // this will send the current code for the NYT node first and the new symbol afterwards
+            tree.encodeNYTNode(output);
+            this.symbolType.writeNewSymbol(c, output);
+            // finally add the character to the tree and update the tree structure
+            tree.addCharacter(c);
+        }
+    }
+    
+    // reads the symbols of a file: the code points of a text file or the bytes of any
+    // other file. The file is mapped into memory window by window and copied into a
+    // buffer in chunks. Well-formed UTF-8 is decoded directly into code points; only
+    // malformed input goes through a CharsetDecoder, which replaces it with U+FFFD
+    // like an InputStreamReader does.
+    private static class SymbolInput {
+        private FileChannel channel;
+        private long fileSize;
+        // the mapped part of the file and its position in the file
+        private MappedByteBuffer window;
+        private long windowStart;
+        // the bytes between position and limit have not been read yet
+        private byte[] bytes = new byte[CHUNK_SIZE];
+        private int position;
+        private int limit;
+        // null for files that are not compressed as text
+        private CharsetDecoder decoder;
+        private CharBuffer characters;
+        // the time spent on reading the file, only measured for the metrics
+        private long ioNanos;
+        
+        private SymbolInput(String filename, SymbolType symbolType) throws IOException {
+            this.channel = new FileInputStream(filename).getChannel();
+            try {
+                this.fileSize = this.channel.size();
+                this.mapWindow(0);
+            } catch (IOException e) {
+                this.channel.close();
+                throw e;
+            }
+            if (symbolType == SymbolType.TEXT) {
+                this.decoder = StandardCharsets.UTF_8.newDecoder();
+                // a supplementary character needs two chars
+                this.characters = CharBuffer.allocate(2);
+            }
+        }
+        
+        // fills the given array with the next symbols
+        // returns the number of symbols read, which is only less than the array's length
+        // at the end of the input
+        private int read(int[] symbols) throws IOException {
+            if (this.decoder != null) {
+                return this.readCodePoints(symbols);
             }
             
-            // Now we have all the results
-            // Iterate over them and add to the bitset
-            while (!path.isEmpty()) {
-                bits.set(i++, path.pop());
+            int length = 0;
+            while (length < symbols.length) {
+                if (this.position == this.limit) {
+                    this.fillBuffer();
+                    if (this.limit == 0) {
+                        break;
+                    }
+                }
+                int n = Math.min(this.limit - this.position, symbols.length - length);
+                for (int i = 0; i < n; i++) {
+                    symbols[length + i] = this.bytes[this.position + i] & 0xFF;
+                }
+                this.position += n;
+                length += n;
+            }
+            return length;
+        }
+        
+        private int readCodePoints(int[] symbols) throws IOException {
+            byte[] bytes = this.bytes;
+            int p = this.position;
+            int limit = this.limit;
+            int length = 0;
+            while (length < symbols.length) {
+                // the buffer has to contain the longest UTF-8 code unless the file ends
+                if (limit - p < 4) {
+                    this.position = p;
+                    this.fillBuffer();
+                    p = this.position;
+                    limit = this.limit;
+                    if (limit == 0) {
+                        break;
+                    }
+                }
+                
+                // ASCII characters are their own UTF-8 code; the continuation bytes of
+                // longer codes start with 10, and overlong codes, surrogates and code
+                // points above U+10FFFF are malformed
+                int b0 = bytes[p];
+                if (b0 >= 0) {
+                    symbols[length++] = b0;
+                    p++;
+                    continue;
+                }
+                int available = limit - p;
+                int b1 = (available > 1) ? bytes[p + 1] : 0;
+                if (b0 >= (byte) 0xC2 && b0 <= (byte) 0xDF && (b1 & 0xC0) == 0x80) {
+                    symbols[length++] = ((b0 & 0x1F) << 6) | (b1 & 0x3F);
+                    p += 2;
+                    continue;
+                }
+                int b2 = (available > 2) ? bytes[p + 2] : 0;
+                if ((b0 & 0xF0) == 0xE0 && (b1 & 0xC0) == 0x80 && (b2 & 0xC0) == 0x80) {
+                    int c = ((b0 & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+                    if (c >= 0x800 && (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE)) {
+                        symbols[length++] = c;
+                        p += 3;
+                        continue;
+                    }
+                }
+                int b3 = (available > 3) ? bytes[p + 3] : 0;
+                if (b0 >= (byte) 0xF0 && b0 <= (byte) 0xF4 && (b1 & 0xC0) == 0x80 && (b2 & 0xC0) == 0x80 && (b3 & 0xC0) == 0x80) {
+                    int c = ((b0 & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+                    if (c >= 0x10000 && c <= Character.MAX_CODE_POINT) {
+                        symbols[length++] = c;
+                        p += 4;
+                        continue;
+                    }
+                }
+                
+                this.position = p;
+                symbols[length++] = this.replaceMalformed();
+                p = this.position;
+            }
+            this.position = p;
+            return length;
+        }
+        
+        // lets the decoder determine the length of the malformed input, which is replaced
+        // with U+FFFD as an InputStreamReader would do
+        private int replaceMalformed() {
+            ByteBuffer malformed = ByteBuffer.wrap(this.bytes, this.position, this.limit - this.position);
+            boolean endOfInput = !this.window.hasRemaining() && this.windowStart + this.window.limit() == this.fileSize;
+            this.decoder.reset();
+            this.characters.clear();
+            CoderResult result = this.decoder.decode(malformed, this.characters, endOfInput);
+            if (result.isMalformed()) {
+                this.position += result.length();
+                return '\uFFFD';
             }
             
-            // Prepare the next character
-            value = input.read();
+            // the decoder has accepted the input after all, which the checks above should
+            // not let happen
+            this.position = malformed.position();
+            return Character.codePointAt(this.characters.array(), 0);
         }
         
-        // add a last 1 to the BitSet (the Decoder ignores it). I experienced that
-        // otherwise trailing 0-bits get lost in the serializing process so that
-        // sometimes one character is missing at the end of the decoded file.
-        bits.set(i + 1, true);
+        // moves the bytes that have not been read to the front of the buffer and fills it
+        // with the following bytes of the file
+        private void fillBuffer() throws IOException {
+            long start = CoderMetrics.ENABLED ? System.nanoTime() : 0;
+            int leftover = this.limit - this.position;
+            System.arraycopy(this.bytes, this.position, this.bytes, 0, leftover);
+            this.position = 0;
+            this.limit = leftover;
+            while (this.limit < this.bytes.length && (this.window.hasRemaining() || this.mapNextWindow())) {
+                int n = Math.min(this.window.remaining(), this.bytes.length - this.limit);
+                this.window.get(this.bytes, this.limit, n);
+                this.limit += n;
+            }
+            if (CoderMetrics.ENABLED) {
+                this.ioNanos += System.nanoTime() - start;
+            }
+        }
         
-        return new CompressedFile(bits);
+        // maps the part of the file following the current window
+        // returns false at the end of the file
+        private boolean mapNextWindow() throws IOException {
+            long position = this.windowStart + this.window.limit();
+            if (position == this.fileSize) {
+                return false;
+            }
+            this.mapWindow(position);
+            return true;
+        }
+        
+        private void mapWindow(long position) throws IOException {
+            this.windowStart = position;
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, this.fileSize - position));
+        }
+        
+        private void close() throws IOException {
+            this.channel.close();
+        }
+    }
+    
+    // the result of compressing a block
+    private static class CompressedData {
+        private ByteArrayOutputStream bytes;
+        private long characterCount;
+        private long payloadBits;
+    }
+    
+    // compresses a block into memory using a tree of its own
+    private class BlockCompression implements Callable<CompressedData> {
+        private int[] characters;
+        private int length;
+        
+        private BlockCompression(int[] characters, int length) {
+            this.characters = characters;
+            this.length = length;
+        }
+        
+        public CompressedData call() throws IOException {
+            AdaptiveHuffmanCoder tree = Encoder.this.createCoder();
+            CompressedData data = new CompressedData();
+            data.bytes = new ByteArrayOutputStream(this.length);
+            BitOutputStream output = new BitOutputStream(data.bytes);
+            
+            try {
+                for (int i = 0; i < this.length; i++) {
+                    Encoder.this.compressCharacter(this.characters[i], tree, output);
+                }
+            } finally {
+                Encoder.this.releaseCoder(tree);
+            }
+            output.close();
+            
+            data.characterCount = this.length;
+            data.payloadBits = output.getBitCount();
+            return data;
+        }
     }
 }
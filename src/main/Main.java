@@ -1,63 +1,157 @@
 package main;
 
+import huffmanTreeStructure.CoderMetrics;
+import huffmanTreeStructure.CoderType;
 import java.io.IOException;
 import java.io.File;
-import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This project implements the compression and decompression of UTF-8-encoded files
  * through adaptive Huffman coding using the FGK-algorithm defined by Faller,
- * Gallager and Knuth to maintain the coding tree.
+ * Gallager and Knuth or Vitter's algorithm V to maintain the coding tree.
  * @author Raphael Brandis
  * @author Patrick de Lanauze
  */
 public class Main {
     /**
-     * You may compress and decompress files using the following command:
-     * java -jar adaptiveHuffmanCoding.jar [compress|decompress] [inputFilename] [outputFilename]
-     * @param args The first argument has to be either "compress" or "decompress", the second is
-     * the file that should be read and the third is the file the en- or decoding
-     * result should be written to.
+     * You may compress and decompress files or measure the speed of both using the following commands:
+     * java -jar adaptiveHuffmanCoding.jar [compress|decompress] [inputFilename] [outputFilename] [fgk|vitter] [text|bytes] [blockSize] [rescale=limit]
+     * java -jar adaptiveHuffmanCoding.jar bench [file|directory] [fgk|vitter] [text|bytes] [blockSize] [rescale=limit] [warmup=n] [iterations=n] [json]
+     * @param args The first argument has to be either "compress", "decompress" or "bench".
+     * For compressing and decompressing, the second is the file that should be read and
+     * the third is the file the en- or decoding result should be written to. The
+     * optional arguments for compressing may be given in any order: the algorithm (FGK
+     * by default), whether the file should be compressed as UTF-8 text (default) or as
+     * bytes, the number of symbols per block, which switches on block mode, and the
+     * root's weight at which all weights are halved.
+     * For benchmarking, the second argument is a file or a directory whose files are
+     * compressed and decompressed (see {@link Benchmark}), followed by the optional
+     * arguments for compressing, the number of warmup and measured iterations per
+     * file and "json" if the results should be printed as JSON instead of a table.
      * @throws java.io.IOException 
-     * @throws java.lang.ClassNotFoundException 
      */
-    public static void main(String[] args) throws IOException, ClassNotFoundException {
-        if (args.length < 3) {
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("bench")) {
+            bench(args);
+        } else if (args.length < 3) {
             printUsage();
+        } else if (args[0].equals("compress")) {
+            Encoder encoder = createEncoder(Arrays.asList(args).subList(3, args.length));
+            if (encoder == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            encoder.compressFile(args[1], args[2]);
+            printResult(System.nanoTime() - start, new File(args[1]).length(), new File(args[2]).length());
+        } else if (args[0].equals("decompress")) {
+            long start = System.nanoTime();
+            new Decoder().decompressFile(args[1], args[2]);
+            printResult(System.nanoTime() - start, new File(args[2]).length(), new File(args[1]).length());
         } else {
-            long start = System.currentTimeMillis();
-            
-            if (args[0].equals("compress")) {
-                for (int i = 0; i < 10; i++) {
-                    Encoder encoder = new Encoder();
-                    encoder.compressFile(args[1], args[2]);
-                }
-            } else if (args[0].equals("decompress")) {
-                for (int i = 0; i < 10; i++) {
-                    Decoder decoder = new Decoder();
-                    decoder.decompressFile(args[1], args[2]);
-                }
+            System.err.println("Unrecognized option: " + args[0]);
+            printUsage();
+        }
+    }
+    
+    // measures compressing and decompressing the files and prints the results
+    private static void bench(String[] args) throws IOException {
+        int warmupIterations = 3;
+        int iterations = 10;
+        boolean json = false;
+        List<String> encoderOptions = new ArrayList<String>();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("warmup=")) {
+                warmupIterations = Integer.parseInt(args[i].substring("warmup=".length()));
+            } else if (args[i].startsWith("iterations=")) {
+                iterations = Integer.parseInt(args[i].substring("iterations=".length()));
+            } else if (args[i].equals("json")) {
+                json = true;
             } else {
-                System.err.println("Unrecognized option: " + args[0]);
+                encoderOptions.add(args[i]);
+            }
+        }
+        
+        Encoder encoder = createEncoder(encoderOptions);
+        if (encoder == null) {
+            return;
+        }
+        Decoder decoder = new Decoder();
+        Benchmark benchmark = new Benchmark(encoder, decoder, warmupIterations, iterations);
+        List<BenchmarkResult> results = benchmark.run(new File(args[1]));
+        
+        if (json) {
+            System.out.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                System.out.println("  " + results.get(i).toJson() + ((i < results.size() - 1) ? "," : ""));
+            }
+            System.out.println("]");
+        } else {
+            System.out.println(String.format("%-30s %-10s %12s %7s %9s %10s %10s %12s", "file", "operation", "bytes", "ratio", "MB/s",
+                    "p50 ms", "p99 ms", "alloc bytes"));
+            for (BenchmarkResult result : results) {
+                System.out.println(result);
+            }
+            if (CoderMetrics.ENABLED) {
+                System.out.println("Encoder: " + encoder.getMetrics());
+                System.out.println("Decoder: " + decoder.getMetrics());
+            }
+        }
+    }
+    
+    // creates an Encoder from the optional arguments for compressing
+    // returns null after printing the usage if an argument is invalid
+    private static Encoder createEncoder(List<String> options) {
+        CoderType coderType = CoderType.FGK;
+        SymbolType symbolType = SymbolType.TEXT;
+        int blockSize = 0;
+        int rescaleLimit = Integer.MAX_VALUE;
+        for (String option : options) {
+            try {
+                if (option.equals("text") || option.equals("bytes")) {
+                    symbolType = SymbolType.valueOf(option.toUpperCase());
+                } else if (option.startsWith("rescale=")) {
+                    rescaleLimit = Integer.parseInt(option.substring("rescale=".length()));
+                } else if (!option.isEmpty() && Character.isDigit(option.charAt(0))) {
+                    blockSize = Integer.parseInt(option);
+                } else {
+                    coderType = CoderType.valueOf(option.toUpperCase());
+                }
+            } catch (IllegalArgumentException e) {
+                // covers the NumberFormatException of an invalid number as well
+                System.err.println("Unrecognized option: " + option);
                 printUsage();
+                return null;
             }
-            
-            long end = System.currentTimeMillis();
-            File in = new File(args[1]);
-            File out = new File(args[2]);
-            long inBytes = in.length();
-            long outBytes = out.length();
-            
-            System.out.println("Process took " + (end - start) + "ms to complete.");
-            System.out.println("Compression ratio: " + ((double) outBytes / (double) inBytes));
         }
+        
+        try {
+            Encoder encoder = new Encoder(coderType, symbolType, blockSize);
+            encoder.setRescaleLimit(rescaleLimit);
+            return encoder;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return null;
+        }
+    }
+    
+    private static void printResult(long nanos, long originalBytes, long compressedBytes) {
+        System.out.println("Process took " + nanos / 1000000 + "ms to complete (" + String.format("%.1f", originalBytes * 1000.0 / nanos) + " MB/s).");
+        System.out.println("Compression ratio: " + ((double) compressedBytes / (double) originalBytes));
     }
     
     private static void printUsage() {
         System.out.println("Adaptive Huffman compressor usage:");
         System.out.println("To compress:");
-        System.out.println("./java -jar adaptiveHuffmanCoding.jar compress input.txt compressed.bin");
+        System.out.println("./java -jar adaptiveHuffmanCoding.jar compress input.txt compressed.bin [fgk|vitter] [text|bytes] [blockSize] [rescale=limit]");
+        System.out.println("(blockSize: symbols per independently compressed block, e.g. " + Encoder.DEFAULT_BLOCK_SIZE + ")");
+        System.out.println("(limit: the total weight at which all weights are halved, e.g. 65536)");
         System.out.println("To decompress:");
         System.out.println("./java -jar adaptiveHuffmanCoding.jar decompress compressed.bin output.txt");
+        System.out.println("To measure compressing and decompressing a file or all files in a directory:");
+        System.out.println("./java -jar adaptiveHuffmanCoding.jar bench testfiles [compress options] [warmup=3] [iterations=10] [json]");
     }
 }
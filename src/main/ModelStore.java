@@ -0,0 +1,131 @@
+package main;
+
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.CoderState;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class stores models, i.e. states of adaptive Huffman coders that have been
+ * trained on sample data (see {@link Encoder#train(String)}), under a numeric id in a
+ * directory. A file compressed with a model from the store names its id (see
+ * {@link CompressedFile}), so the {@link Decoder} can look the model up again.
+ * The most recently used models are kept in memory as ready-made coders, so starting
+ * a coder with a cached model only copies it instead of reading and rebuilding the tree.
+ * Every model is stored in the file "id.model" (see {@link CoderState#write(java.io.DataOutput)}).
+ * A ModelStore may be used by several threads at once.
+ * @author Raphael Brandis
+ */
+public class ModelStore {
+    private File directory;
+    private Map<Integer, AdaptiveHuffmanCoder> cache;
+    
+    /**
+     * Constructor for ModelStores
+     * @param directory the directory the models are stored in
+     * @param cacheSize the maximum number of models kept in memory
+     */
+    public ModelStore(String directory, final int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+        }
+        this.directory = new File(directory);
+        
+        // a LinkedHashMap in access order evicts the least recently used model
+        this.cache = new LinkedHashMap<Integer, AdaptiveHuffmanCoder>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, AdaptiveHuffmanCoder> eldest) {
+                return this.size() > cacheSize;
+            }
+        };
+    }
+    
+    /**
+     * Stores a model under the given id, replacing the model that had this id before.
+     * If the model cannot be written, no model is left under this id.
+     * @param id the model's id (greater than 0)
+     * @param model the state a coder should start with
+     * @throws java.io.IOException 
+     */
+    public void save(int id, CoderState model) throws IOException {
+        checkId(id);
+        File file = this.getFile(id);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        boolean written = false;
+        try {
+            try {
+                model.write(out);
+            } finally {
+                out.close();
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                // the previous model has already been overwritten, so drop it and the partial file
+                synchronized (this.cache) {
+                    this.cache.remove(id);
+                }
+                file.delete();
+            }
+        }
+        
+        synchronized (this.cache) {
+            this.cache.put(id, model.getCoderType().createCoder(model));
+        }
+    }
+    
+    /**
+     * Creates a new coder that starts with the model stored under the given id. The
+     * model is read from its file if it is not in memory.
+     * @param id the model's id
+     * @return the new coder
+     * @throws java.io.IOException if there is no model with this id or it is corrupt
+     */
+    public AdaptiveHuffmanCoder createCoder(int id) throws IOException {
+        checkId(id);
+        AdaptiveHuffmanCoder model;
+        synchronized (this.cache) {
+            model = this.cache.get(id);
+        }
+        
+        if (model == null) {
+            // several threads may read the same model at once, but the cache keeps only one copy
+            model = this.read(id);
+            synchronized (this.cache) {
+                this.cache.put(id, model);
+            }
+        }
+        return model.copy();
+    }
+    
+    private AdaptiveHuffmanCoder read(int id) throws IOException {
+        File file = this.getFile(id);
+        if (!file.isFile()) {
+            throw new IOException("Unknown model: " + id);
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            CoderState model = CoderState.read(in);
+            return model.getCoderType().createCoder(model);
+        } finally {
+            in.close();
+        }
+    }
+    
+    private File getFile(int id) {
+        return new File(this.directory, id + ".model");
+    }
+    
+    private static void checkId(int id) {
+        if (id < 1) {
+            throw new IllegalArgumentException("Invalid model id: " + id);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package main;
+
+import bitIO.BitInputStream;
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.CoderState;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class decompresses a stream written by a {@link StreamEncoder} whose bytes
+ * arrive in chunks, similar to an {@link java.util.zip.Inflater}. Every chunk passed
+ * to one of the update-methods is decompressed as far as it goes; a symbol whose code
+ * is split between two chunks is decoded once the second chunk arrives. The
+ * decompressed bytes (characters in UTF-8) can be taken using
+ * {@link #read(byte[], int, int)}. Once the bytes up to a flush point written by
+ * {@link StreamEncoder#syncFlush()} have arrived, all symbols sent before it have been
+ * decompressed. The stream ends with a marker (see {@link CompressedStream}), after
+ * which {@link #isFinished()} returns true.
+ * A StreamDecoder is created by {@link Decoder#newStream()} and uses the Decoder's
+ * model or model store. Between two flush points, a snapshot of the coder (see
+ * {@link #getState()}) allows to continue later with a StreamDecoder created by
+ * {@link Decoder#resumeStream(CompressedStream, CoderState)}.
+ * A StreamDecoder may only be used by one thread at a time.
+ * @author Raphael Brandis
+ */
+public class StreamDecoder {
+    // the number of symbols decoded before they are written to the output
+    private static final int CHUNK_SIZE = 8192;
+    
+    // returned instead of a symbol whose bits have not arrived completely
+    private static final int INCOMPLETE = Integer.MIN_VALUE;
+    
+    private Decoder decoder;
+    // null until the whole header has arrived
+    private CompressedStream header;
+    private AdaptiveHuffmanCoder model;
+    // null before the header has arrived and after the coder has been released
+    private AdaptiveHuffmanCoder tree;
+    private boolean ended;
+    private boolean finished;
+    
+    // the compressed bytes that have not been decoded completely; the first bitOffset
+    // bits of the first byte belong to symbols that have been decoded already
+    private ByteQueue compressedBytes = new ByteQueue();
+    private int bitOffset;
+    private int[] symbols = new int[CHUNK_SIZE];
+    private ByteQueue decompressedBytes = new ByteQueue();
+    private Decoder.SymbolOutput output;
+    
+    private long bytesRead;
+    private long bytesWritten;
+    
+    /**
+     * Constructor for StreamDecoders
+     * @param decoder the Decoder the model and the coder are taken from
+     */
+    StreamDecoder(Decoder decoder) {
+        this.decoder = decoder;
+    }
+    
+    /**
+     * Constructor for StreamDecoders that continue a stream whose header has arrived
+     * before
+     * @param decoder the Decoder the coder is given back to
+     * @param header the header of the stream
+     * @param tree the coder at the point the stream is continued from
+     */
+    StreamDecoder(Decoder decoder, CompressedStream header, AdaptiveHuffmanCoder tree) {
+        this.decoder = decoder;
+        this.header = header;
+        this.tree = tree;
+        this.output = new Decoder.SymbolOutput(this.decompressedBytes, header.getSymbolType());
+    }
+    
+    /**
+     * Decompresses a chunk of the compressed stream as far as possible.
+     * @param b the array containing the chunk
+     * @param off the position of the chunk's first byte
+     * @param len the number of bytes
+     * @throws java.io.IOException if the stream is corrupt or names a model the Decoder does not have
+     */
+    public void update(byte[] b, int off, int len) throws IOException {
+        this.update(ByteBuffer.wrap(b, off, len));
+    }
+    
+    /**
+     * Decompresses a chunk of the compressed stream as far as possible.
+     * @param b the chunk
+     * @throws java.io.IOException if the stream is corrupt or names a model the Decoder does not have
+     */
+    public void update(byte[] b) throws IOException {
+        this.update(b, 0, b.length);
+    }
+    
+    /**
+     * Decompresses the remaining bytes of the given buffer as far as possible. Bytes
+     * following the end of the stream are kept (see {@link #getRemaining()}).
+     * @param input the chunk, whose position is moved to its limit
+     * @throws java.io.IOException if the stream is corrupt or names a model the Decoder does not have
+     */
+    public void update(ByteBuffer input) throws IOException {
+        if (this.ended && !this.finished) {
+            throw new IllegalStateException("The stream has already been ended");
+        }
+        this.compressedBytes.write(input);
+        if (this.finished) {
+            return;
+        }
+        
+        if (this.header == null) {
+            if (this.compressedBytes.size() < CompressedStream.HEADER_SIZE) {
+                return;
+            }
+            this.readHeader();
+        }
+        this.decompress();
+    }
+    
+    /**
+     * Reads decompressed bytes that are available.
+     * @param b the array the bytes should be copied to
+     * @param off the position in the array of the first byte
+     * @param len the maximum number of bytes
+     * @return the number of bytes read, 0 if none are available at the moment
+     */
+    public int read(byte[] b, int off, int len) {
+        int n = this.decompressedBytes.read(b, off, len);
+        this.bytesWritten += n;
+        return n;
+    }
+    
+    /**
+     * Reads as many available decompressed bytes as fit into the given buffer.
+     * @param destination the buffer the bytes should be copied to
+     * @return the number of bytes read, 0 if none are available at the moment
+     */
+    public int read(ByteBuffer destination) {
+        int n = this.decompressedBytes.read(destination);
+        this.bytesWritten += n;
+        return n;
+    }
+    
+    /**
+     * Returns the number of decompressed bytes that can be read at the moment.
+     * @return the number of bytes
+     */
+    public int available() {
+        return this.decompressedBytes.size();
+    }
+    
+    /**
+     * Checks if the end of the stream has been decompressed and all decompressed bytes
+     * have been read.
+     * @return true if the stream is complete, otherwise false
+     */
+    public boolean isFinished() {
+        return this.finished && this.decompressedBytes.size() == 0;
+    }
+    
+    /**
+     * Returns the number of bytes that have been passed to the StreamDecoder after the
+     * end of the stream, e.g. the start of the next stream.
+     * @return the number of bytes, 0 if the stream has not ended yet
+     */
+    public int getRemaining() {
+        return this.finished ? this.compressedBytes.size() : 0;
+    }
+    
+    /**
+     * Returns the header of the stream.
+     * @return the header or null if it has not arrived completely yet
+     */
+    public CompressedStream getHeader() {
+        return this.header;
+    }
+    
+    /**
+     * Returns the number of compressed bytes that have been decompressed so far,
+     * including the header.
+     * @return the number of bytes
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+    
+    /**
+     * Returns the number of decompressed bytes read from the StreamDecoder so far.
+     * @return the number of bytes
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+    
+    /**
+     * Takes a snapshot of the coder once all bytes passed so far have been decompressed
+     * completely, e.g. right after the bytes up to a flush point written by
+     * {@link StreamEncoder#syncFlush()} have arrived. A StreamDecoder created from the
+     * snapshot by {@link Decoder#resumeStream(CompressedStream, CoderState)} continues
+     * with the following bytes exactly like this one.
+     * @return the snapshot
+     */
+    public CoderState getState() {
+        if (this.tree == null) {
+            throw new IllegalStateException("The header has not arrived yet or the stream has already been ended");
+        } else if (this.compressedBytes.size() > 0 || this.bitOffset > 0) {
+            throw new IllegalStateException("The state can only be taken once all bytes up to a flush point have been decompressed");
+        }
+        return this.tree.getState();
+    }
+    
+    /**
+     * Gives the coder back to the Decoder's pool before the end of the stream has
+     * arrived, e.g. if it is not needed any more because the connection has been
+     * closed. Afterwards, no more chunks may be passed to the StreamDecoder. This is
+     * done already when the end of the stream is decompressed.
+     */
+    public void end() {
+        this.ended = true;
+        if (this.tree != null) {
+            this.decoder.releaseCoder(this.tree, this.model);
+            this.tree = null;
+        }
+    }
+    
+    // reads the header and creates the coder
+    private void readHeader() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.compressedBytes.getBytes(), this.compressedBytes.getStart(), CompressedStream.HEADER_SIZE));
+        CompressedStream header = CompressedStream.read(in);
+        this.model = this.decoder.getModel(header.getCoderType(), header.getModelId());
+        this.tree = this.decoder.createCoder(header.getCoderType(), header.getRescaleLimit(), this.model);
+        this.header = header;
+        this.output = new Decoder.SymbolOutput(this.decompressedBytes, header.getSymbolType());
+        this.compressedBytes.skip(CompressedStream.HEADER_SIZE);
+        this.bytesRead += CompressedStream.HEADER_SIZE;
+    }
+    
+    // decodes all complete symbols and drops their bytes
+    private void decompress() throws IOException {
+        SymbolType symbolType = this.header.getSymbolType();
+        BitInputStream input = new BitInputStream(this.compressedBytes.getBytes(), this.compressedBytes.getStart(), 8L * this.compressedBytes.size());
+        input.readBits(this.bitOffset);
+        
+        // the bits left in front of the first symbol that has not been decoded completely
+        long bitsLeft = input.getBitsLeft();
+        int length = 0;
+        while (true) {
+            int symbol = this.decompressCharacter(input, symbolType);
+            if (symbol == INCOMPLETE) {
+                break;
+            } else if (symbol < 0) {
+                int escape = -1 - symbol;
+                if (escape != CompressedStream.END_ESCAPE && escape != CompressedStream.SYNC_ESCAPE) {
+                    throw new IOException("Unknown escape: " + escape);
+                }
+                // the rest of the byte is padding
+                input.readBits((int) (input.getBitsLeft() % 8));
+                bitsLeft = input.getBitsLeft();
+                if (escape == CompressedStream.END_ESCAPE) {
+                    this.finished = true;
+                    break;
+                }
+                continue;
+            }
+            
+            bitsLeft = input.getBitsLeft();
+            this.symbols[length++] = symbol;
+            if (length == CHUNK_SIZE) {
+                this.output.write(this.symbols, 0, length);
+                length = 0;
+            }
+        }
+        this.output.write(this.symbols, 0, length);
+        this.output.flush();
+        
+        long consumedBits = 8L * this.compressedBytes.size() - bitsLeft;
+        this.compressedBytes.skip((int) (consumedBits / 8));
+        this.bytesRead += consumedBits / 8;
+        this.bitOffset = (int) (consumedBits % 8);
+        if (this.finished) {
+            this.end();
+        }
+    }
+    
+    // decodes the next symbol
+    // returns the symbol, INCOMPLETE or -1 - escape for an escape
+    private int decompressCharacter(BitInputStream input, SymbolType symbolType) throws IOException {
+        // as long as the tree consists of the NYT node only, this returns its
+        // number without reading any bits
+        int nodeNumber = this.tree.readHuffmanCode(input);
+        if (nodeNumber == -1) {
+            return INCOMPLETE;
+        } else if (nodeNumber != this.tree.getNYTNodeNumber()) {
+            return this.tree.decodeCharacterByNodeNumber(nodeNumber);
+        }
+        
+        int symbol;
+        try {
+            symbol = symbolType.readStreamSymbol(input);
+        } catch (EOFException e) {
+            // the rest of the new symbol has not arrived yet
+            return INCOMPLETE;
+        }
+        if (symbol >= 0) {
+            this.tree.addCharacter(symbol);
+        }
+        return symbol;
+    }
+}
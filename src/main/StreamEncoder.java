@@ -0,0 +1,382 @@
+package main;
+
+import bitIO.BitOutputStream;
+import huffmanTreeStructure.AdaptiveHuffmanCoder;
+import huffmanTreeStructure.CoderState;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class compresses a stream whose data arrives in chunks, e.g. network messages,
+ * similar to a {@link java.util.zip.Deflater}. The chunks are passed to one of the
+ * update-methods, which compress them at once; the compressed bytes can be taken using
+ * {@link #read(byte[], int, int)} whenever they are needed. To let the receiver
+ * decompress everything sent so far without waiting for more data, e.g. when shipping
+ * a live log, {@link #syncFlush()} marks a flush point. After the last chunk,
+ * {@link #finish()} ends the stream. The result can be decompressed chunk by chunk by a
+ * {@link StreamDecoder} (see {@link CompressedStream} for the format).
+ * At a flush point, a snapshot of the coder (see {@link #getState()}) allows to continue
+ * the stream later, e.g. after a restart, with a StreamEncoder created by
+ * {@link Encoder#resumeStream(CoderState)}.
+ * A StreamEncoder is created by {@link Encoder#newStream()} and uses the Encoder's
+ * coder type, symbol type, model and rescale limit; block mode does not apply to
+ * streams. In text streams, bytes are decoded from UTF-8 (a character may be split
+ * between two chunks) and malformed input is replaced with U+FFFD.
+ * A StreamEncoder may only be used by one thread at a time.
+ * @author Raphael Brandis
+ */
+public class StreamEncoder {
+    // the number of characters decoded from UTF-8 at once
+    private static final int CHUNK_SIZE = 8192;
+    
+    private Encoder encoder;
+    private SymbolType symbolType;
+    // null once the coder has been released
+    private AdaptiveHuffmanCoder tree;
+    private ByteQueue compressedBytes = new ByteQueue();
+    private BitOutputStream output = new BitOutputStream(this.compressedBytes);
+    private boolean finished;
+    // true if no symbol has been compressed since the start or the last flush point
+    private boolean atFlushPoint = true;
+    
+    // null for streams that are not compressed as text
+    private CharsetDecoder decoder;
+    // the bytes of a character that has not been completed by its chunk
+    private ByteBuffer textBytes;
+    private CharBuffer characters;
+    // the first half of a surrogate pair that ended the last CharSequence or 0
+    private char highSurrogate;
+    
+    private long bytesRead;
+    private long bytesWritten;
+    
+    /**
+     * Constructor for StreamEncoders, which writes the stream's header unless a stream
+     * is resumed
+     * @param encoder the Encoder the coder is taken from and given back to
+     * @param tree the coder the stream should be compressed with
+     * @param symbolType the kind of symbols the input is compressed as
+     * @param header the header of the stream or null if the stream is resumed
+     * @throws java.io.IOException 
+     */
+    StreamEncoder(Encoder encoder, AdaptiveHuffmanCoder tree, SymbolType symbolType, CompressedStream header) throws IOException {
+        this.encoder = encoder;
+        this.symbolType = symbolType;
+        this.tree = tree;
+        if (header != null) {
+            header.write(new DataOutputStream(this.compressedBytes));
+        }
+        
+        if (this.symbolType == SymbolType.TEXT) {
+            this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.textBytes = ByteBuffer.allocate(CHUNK_SIZE);
+            this.characters = CharBuffer.allocate(CHUNK_SIZE);
+        }
+    }
+    
+    /**
+     * Compresses a chunk of bytes: the UTF-8 code of text or any bytes if the symbol
+     * type is {@link SymbolType#BYTES}.
+     * @param b the array containing the chunk
+     * @param off the position of the chunk's first byte
+     * @param len the number of bytes
+     * @throws java.io.IOException 
+     */
+    public void update(byte[] b, int off, int len) throws IOException {
+        this.update(ByteBuffer.wrap(b, off, len));
+    }
+    
+    /**
+     * Compresses a chunk of bytes.
+     * @param b the chunk
+     * @throws java.io.IOException 
+     */
+    public void update(byte[] b) throws IOException {
+        this.update(b, 0, b.length);
+    }
+    
+    /**
+     * Compresses the remaining bytes of the given buffer.
+     * @param input the chunk, whose position is moved to its limit
+     * @throws java.io.IOException 
+     */
+    public void update(ByteBuffer input) throws IOException {
+        this.checkNotEnded();
+        this.bytesRead += input.remaining();
+        this.completeCharacters();
+        if (this.decoder == null) {
+            while (input.hasRemaining()) {
+                this.compressCharacter(input.get() & 0xFF);
+            }
+            return;
+        }
+        
+        while (input.hasRemaining()) {
+            int n = Math.min(input.remaining(), this.textBytes.remaining());
+            ByteBuffer chunk = input.duplicate();
+            chunk.limit(chunk.position() + n);
+            this.textBytes.put(chunk);
+            input.position(input.position() + n);
+            this.compressTextBytes(false);
+        }
+    }
+    
+    /**
+     * Compresses a chunk of characters. A surrogate pair may be split between two
+     * chunks; other surrogates are replaced with '?'. If the symbol type is
+     * {@link SymbolType#BYTES}, the characters' UTF-8 code is compressed.
+     * @param text the chunk
+     * @throws java.io.IOException 
+     */
+    public void update(CharSequence text) throws IOException {
+        this.checkNotEnded();
+        if (this.textBytes != null && this.textBytes.position() > 0) {
+            // a character's bytes cannot be completed by characters
+            this.compressTextBytes(true);
+        }
+        
+        int i = 0;
+        if (this.highSurrogate != 0 && text.length() > 0) {
+            char c = this.highSurrogate;
+            this.highSurrogate = 0;
+            if (Character.isLowSurrogate(text.charAt(0))) {
+                this.compressCodePoint(Character.toCodePoint(c, text.charAt(0)));
+                i++;
+            } else {
+                this.compressCodePoint('?');
+            }
+        }
+        
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (!Character.isSurrogate(c)) {
+                this.compressCodePoint(c);
+            } else if (Character.isHighSurrogate(c) && i == text.length()) {
+                // the low surrogate may follow in the next chunk
+                this.highSurrogate = c;
+            } else if (Character.isHighSurrogate(c) && Character.isLowSurrogate(text.charAt(i))) {
+                this.compressCodePoint(Character.toCodePoint(c, text.charAt(i++)));
+            } else {
+                this.compressCodePoint('?');
+            }
+        }
+    }
+    
+    /**
+     * Makes all completely written bytes of the compressed stream available to
+     * {@link #read(byte[], int, int)}. The last few bits written stay behind until
+     * more symbols complete their byte or the stream is finished (see
+     * {@link #syncFlush()}).
+     * @throws java.io.IOException 
+     */
+    public void flush() throws IOException {
+        this.output.flush();
+    }
+    
+    /**
+     * Writes a flush point and makes all bytes of the compressed stream written so far
+     * available to {@link #read(byte[], int, int)}. Once a {@link StreamDecoder} has
+     * received these bytes, it has decompressed every symbol passed before. The flush
+     * point costs the code of the NYT node, an escape and the padding up to the next
+     * byte; the coder keeps its tree, so the code does not get worse afterwards.
+     * Characters whose bytes or surrogates are incomplete wait for the next chunk.
+     * @throws java.io.IOException 
+     */
+    public void syncFlush() throws IOException {
+        this.checkNotEnded();
+        this.tree.encodeNYTNode(this.output);
+        this.symbolType.writeEscape(CompressedStream.SYNC_ESCAPE, this.output);
+        this.output.padToByte();
+        this.output.flush();
+        this.atFlushPoint = true;
+    }
+    
+    /**
+     * Takes a snapshot of the coder at a flush point, i.e. right after the stream has
+     * been started or {@link #syncFlush()} has been called without a character waiting
+     * for the rest of its bytes or surrogates. Once all bytes up to there have been
+     * read, a StreamEncoder created from the snapshot by
+     * {@link Encoder#resumeStream(CoderState)} continues the stream exactly like this
+     * one; the receiver resumes its {@link StreamDecoder} the same way.
+     * @return the snapshot
+     */
+    public CoderState getState() {
+        this.checkNotEnded();
+        if (!this.atFlushPoint || this.highSurrogate != 0 || (this.textBytes != null && this.textBytes.position() > 0)) {
+            throw new IllegalStateException("The state can only be taken at a flush point without incomplete characters");
+        }
+        return this.tree.getState();
+    }
+    
+    /**
+     * Compresses what is left of the input, ends the stream and makes all of its
+     * bytes available to {@link #read(byte[], int, int)}. Afterwards, no more chunks
+     * may be passed to the StreamEncoder.
+     * @throws java.io.IOException 
+     */
+    public void finish() throws IOException {
+        if (this.tree == null) {
+            return;
+        }
+        this.completeCharacters();
+        if (this.textBytes != null && this.textBytes.position() > 0) {
+            this.compressTextBytes(true);
+        }
+        
+        this.tree.encodeNYTNode(this.output);
+        this.symbolType.writeEscape(CompressedStream.END_ESCAPE, this.output);
+        // pads the last byte, the ByteQueue is not closed
+        this.output.close();
+        this.finished = true;
+        this.end();
+    }
+    
+    /**
+     * Reads compressed bytes that are available.
+     * @param b the array the bytes should be copied to
+     * @param off the position in the array of the first byte
+     * @param len the maximum number of bytes
+     * @return the number of bytes read, 0 if none are available at the moment
+     */
+    public int read(byte[] b, int off, int len) {
+        int n = this.compressedBytes.read(b, off, len);
+        this.bytesWritten += n;
+        return n;
+    }
+    
+    /**
+     * Reads as many available compressed bytes as fit into the given buffer.
+     * @param destination the buffer the bytes should be copied to
+     * @return the number of bytes read, 0 if none are available at the moment
+     */
+    public int read(ByteBuffer destination) {
+        int n = this.compressedBytes.read(destination);
+        this.bytesWritten += n;
+        return n;
+    }
+    
+    /**
+     * Returns the number of compressed bytes that can be read at the moment.
+     * @return the number of bytes
+     */
+    public int available() {
+        return this.compressedBytes.size();
+    }
+    
+    /**
+     * Checks if the stream has been finished and all of its bytes have been read.
+     * @return true if the stream is complete, otherwise false
+     */
+    public boolean isFinished() {
+        return this.finished && this.compressedBytes.size() == 0;
+    }
+    
+    /**
+     * Returns the number of uncompressed bytes passed to the StreamEncoder so far;
+     * characters are counted as the bytes of their UTF-8 code.
+     * @return the number of bytes
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+    
+    /**
+     * Returns the number of compressed bytes read from the StreamEncoder so far.
+     * @return the number of bytes
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+    
+    /**
+     * Gives the coder back to the Encoder's pool without finishing the stream, e.g. if
+     * it is not needed any more because the connection has been closed. Afterwards, no
+     * more chunks may be passed to the StreamEncoder. {@link #finish()} does this
+     * already.
+     */
+    public void end() {
+        if (this.tree != null) {
+            this.encoder.releaseCoder(this.tree);
+            this.tree = null;
+        }
+    }
+    
+    private void checkNotEnded() {
+        if (this.tree == null) {
+            throw new IllegalStateException("The stream has already been finished or ended");
+        }
+    }
+    
+    // compresses a high surrogate that has not been completed by the next chunk
+    private void completeCharacters() throws IOException {
+        if (this.highSurrogate != 0) {
+            this.highSurrogate = 0;
+            this.compressCodePoint('?');
+        }
+    }
+    
+    // decodes the buffered UTF-8 bytes and compresses the characters; the bytes of an
+    // incomplete character are kept unless the input ends
+    private void compressTextBytes(boolean endOfInput) throws IOException {
+        this.textBytes.flip();
+        CoderResult result;
+        do {
+            result = this.decoder.decode(this.textBytes, this.characters, endOfInput);
+            if (endOfInput && result.isUnderflow()) {
+                this.decoder.flush(this.characters);
+            }
+            
+            // the decoder never splits a surrogate pair
+            this.characters.flip();
+            char[] chars = this.characters.array();
+            int limit = this.characters.limit();
+            for (int i = 0; i < limit; i++) {
+                char c = chars[i];
+                if (Character.isHighSurrogate(c)) {
+                    this.compressCharacter(Character.toCodePoint(c, chars[++i]));
+                } else {
+                    this.compressCharacter(c);
+                }
+            }
+            this.characters.clear();
+        } while (result.isOverflow());
+        this.textBytes.compact();
+        if (endOfInput) {
+            this.decoder.reset();
+        }
+    }
+    
+    // compresses a character passed as a CharSequence, counting its UTF-8 bytes
+    private void compressCodePoint(int c) throws IOException {
+        int length = BitTools.getUTF8Length(c);
+        this.bytesRead += length;
+        if (this.decoder != null) {
+            this.compressCharacter(c);
+            return;
+        }
+        
+        // a byte stream gets the character's UTF-8 code
+        int code = BitTools.encodeUTF8Character(c);
+        for (int i = length - 1; i >= 0; i--) {
+            this.compressCharacter((code >>> (i * 8)) & 0xFF);
+        }
+    }
+    
+    private void compressCharacter(int c) throws IOException {
+        this.atFlushPoint = false;
+        if (this.tree.characterExists(c)) {
+            this.tree.encodeCharacter(c, this.output);
+        } else {
+            // the NYT node's code announces the new symbol, which is added to the tree
+            this.tree.encodeNYTNode(this.output);
+            this.symbolType.writeStreamSymbol(c, this.output);
+            this.tree.addCharacter(c);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package main;
+
+/**
+ * This class describes a stream that has been compressed or decompressed by a
+ * {@link CompressionService}: its files, their sizes and the time it took.
+ * @author Raphael Brandis
+ */
+public class StreamResult {
+    private String inputFilename;
+    private String outputFilename;
+    private long inputBytes;
+    private long outputBytes;
+    private long latencyNanos;
+    private long processingNanos;
+    
+    /**
+     * Constructor for StreamResults
+     * @param inputFilename the path of the file that has been read
+     * @param outputFilename the path of the file that has been written
+     * @param inputBytes the size of the input file in bytes
+     * @param outputBytes the size of the output file in bytes
+     * @param latencyNanos the time from submitting the stream until it was done in nanoseconds
+     * @param processingNanos the time spent on the stream itself in nanoseconds
+     */
+    public StreamResult(String inputFilename, String outputFilename, long inputBytes, long outputBytes, long latencyNanos, long processingNanos) {
+        this.inputFilename = inputFilename;
+        this.outputFilename = outputFilename;
+        this.inputBytes = inputBytes;
+        this.outputBytes = outputBytes;
+        this.latencyNanos = latencyNanos;
+        this.processingNanos = processingNanos;
+    }
+    
+    /**
+     * Returns the path of the file that has been read
+     * @return the input file's path
+     */
+    public String getInputFilename() {
+        return this.inputFilename;
+    }
+    
+    /**
+     * Returns the path of the file that has been written
+     * @return the output file's path
+     */
+    public String getOutputFilename() {
+        return this.outputFilename;
+    }
+    
+    /**
+     * Returns the size of the input file
+     * @return the number of bytes read
+     */
+    public long getInputBytes() {
+        return this.inputBytes;
+    }
+    
+    /**
+     * Returns the size of the output file
+     * @return the number of bytes written
+     */
+    public long getOutputBytes() {
+        return this.outputBytes;
+    }
+    
+    /**
+     * Returns the time from submitting the stream until it was done, including the time
+     * it waited for a free thread
+     * @return the latency in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return this.latencyNanos;
+    }
+    
+    /**
+     * Returns the time spent on compressing or decompressing the stream itself
+     * @return the processing time in nanoseconds
+     */
+    public long getProcessingNanos() {
+        return this.processingNanos;
+    }
+    
+    /**
+     * Returns a short description of the stream, e.g. for log files.
+     * @return the description
+     */
+    public String toString() {
+        return this.inputFilename + " -> " + this.outputFilename + ": " + this.inputBytes + " -> " + this.outputBytes + " bytes, "
+                + this.latencyNanos / 1000000 + " ms latency, " + this.processingNanos / 1000000 + " ms processing";
+    }
+}
@@ -0,0 +1,139 @@
+package main;
+
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import java.io.IOException;
+
+/**
+ * The kinds of symbols a file can be compressed as. The id of a symbol type is stored
+ * in every compressed file, so the ids must never change.
+ * @author Raphael Brandis
+ */
+public enum SymbolType {
+    /**
+     * The characters of a UTF-8-encoded text file. New characters are sent in UTF-8.
+     */
+    TEXT(0),
+    
+    /**
+     * The bytes of an arbitrary file. New bytes are sent as 8 bits.
+     */
+    BYTES(1);
+    
+    /**
+     * The highest escape a stream may contain (see {@link #writeEscape(int, BitOutputStream)})
+     */
+    public static final int MAX_ESCAPE = 7;
+    
+    private final int id;
+    
+    private SymbolType(int id) {
+        this.id = id;
+    }
+    
+    /**
+     * Returns the id that is stored in compressed files.
+     * @return the symbol type's id
+     */
+    public int getId() {
+        return this.id;
+    }
+    
+    /**
+     * Writes a symbol that has not occurred before (following the NYT node's code).
+     * @param symbol the character or the byte (0 to 255)
+     * @param out the stream the symbol should be written to
+     * @throws java.io.IOException 
+     */
+    public void writeNewSymbol(int symbol, BitOutputStream out) throws IOException {
+        if (this == BYTES) {
+            out.writeBits(symbol, 8);
+        } else {
+            BitTools.writeUTF8Character(symbol, out);
+        }
+    }
+    
+    /**
+     * Reads a symbol previously written by {@link #writeNewSymbol(int, BitOutputStream)}.
+     * @param in the stream the symbol should be read from
+     * @return the character or the byte (0 to 255)
+     * @throws java.io.IOException 
+     */
+    public int readNewSymbol(BitInputStream in) throws IOException {
+        if (this == BYTES) {
+            return (int) in.readBits(8);
+        }
+        return BitTools.readUTF8Character(in);
+    }
+    
+    /**
+     * Writes a symbol that has not occurred before in a stream (see {@link CompressedStream}).
+     * Characters are sent in UTF-8 as in a file; a byte is preceded by a 0-bit, so it
+     * cannot be mistaken for an escape.
+     * @param symbol the character or the byte (0 to 255)
+     * @param out the stream the symbol should be written to
+     * @throws java.io.IOException 
+     */
+    public void writeStreamSymbol(int symbol, BitOutputStream out) throws IOException {
+        if (this == BYTES) {
+            out.writeBits(symbol, 9);
+        } else {
+            BitTools.writeUTF8Character(symbol, out);
+        }
+    }
+    
+    /**
+     * Writes an escape in place of a new symbol in a stream (following the NYT node's
+     * code). A character's escape is a byte that never starts a UTF-8 code (0xF8 to
+     * 0xFF), a byte's escape is a 1-bit followed by 3 bits.
+     * @param escape the escape (0 to {@link #MAX_ESCAPE}), e.g. {@link CompressedStream#END_ESCAPE}
+     * @param out the stream the escape should be written to
+     * @throws java.io.IOException 
+     */
+    public void writeEscape(int escape, BitOutputStream out) throws IOException {
+        if (this == BYTES) {
+            out.writeBits(0x8 | escape, 4);
+        } else {
+            out.writeBits(0xF8 | escape, 8);
+        }
+    }
+    
+    /**
+     * Reads a symbol or an escape previously written by
+     * {@link #writeStreamSymbol(int, BitOutputStream)} or {@link #writeEscape(int, BitOutputStream)}.
+     * @param in the stream the symbol should be read from
+     * @return the character or the byte (0 to 255), or -1 - escape for an escape
+     * @throws java.io.IOException if the symbol is invalid (an EOFException if the
+     * stream ends within the symbol)
+     */
+    public int readStreamSymbol(BitInputStream in) throws IOException {
+        if (this == BYTES) {
+            if (in.readBits(1) == 0) {
+                return (int) in.readBits(8);
+            }
+            return -1 - (int) in.readBits(3);
+        }
+        
+        int startingByte = (int) in.peekBits(8);
+        if (startingByte >= 0xF8 && in.getBitsLeft() >= 8) {
+            in.skipBits(8);
+            return -1 - (startingByte & MAX_ESCAPE);
+        }
+        return BitTools.readUTF8Character(in);
+    }
+    
+    /**
+     * Returns the symbol type with the given id.
+     * @param id a symbol type's id as returned by {@link #getId()}
+     * @return the symbol type
+     * @throws IllegalArgumentException if there is no symbol type with the given id
+     */
+    public static SymbolType fromId(int id) {
+        for (SymbolType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown symbol type id: " + id);
+    }
+}
@@ -0,0 +1,53 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+
+/**
+ * This class measures the time spent on reading from and writing to another channel,
+ * e.g. a FileChannel, for the {@link CompressionMetrics}.
+ * @author Raphael Brandis
+ */
+class TimedChannel implements ByteChannel {
+    private ByteChannel channel;
+    private long nanos;
+    
+    /**
+     * Constructor for TimedChannels
+     * @param channel the channel that is actually read or written
+     */
+    TimedChannel(ByteChannel channel) {
+        this.channel = channel;
+    }
+    
+    public int read(ByteBuffer destination) throws IOException {
+        long start = System.nanoTime();
+        int n = this.channel.read(destination);
+        this.nanos += System.nanoTime() - start;
+        return n;
+    }
+    
+    public int write(ByteBuffer source) throws IOException {
+        long start = System.nanoTime();
+        int n = this.channel.write(source);
+        this.nanos += System.nanoTime() - start;
+        return n;
+    }
+    
+    public boolean isOpen() {
+        return this.channel.isOpen();
+    }
+    
+    public void close() throws IOException {
+        this.channel.close();
+    }
+    
+    /**
+     * Returns the time spent on reading and writing so far.
+     * @return the time in nanoseconds
+     */
+    long getNanos() {
+        return this.nanos;
+    }
+}
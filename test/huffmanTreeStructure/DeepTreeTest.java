@@ -0,0 +1,159 @@
+package huffmanTreeStructure;
+
+import bitIO.BitOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the trees at the greatest depth they can reach. As every tree keeps the
+ * sibling property, a leaf at the depth d requires the root to have a weight of at
+ * least the d-th Fibonacci number, so with int weights no code gets longer than about
+ * 45 bits. The deepest tree is a chain whose leaves have Fibonacci weights; it is
+ * created from a snapshot, as reaching it by coding symbols would take almost 2^31 of
+ * them.
+ * @author Raphael Brandis
+ */
+public class DeepTreeTest {
+    // the maximum weight of the root of the tree the test starts with, which leaves
+    // room for coding more symbols
+    private static final long MAX_ROOT_WEIGHT = Integer.MAX_VALUE - (1 << 20);
+    
+    @Test
+    public void deepestTreesRoundTrip() throws IOException {
+        int[] symbols = this.createSymbols();
+        byte[] objectBits = null;
+        for (CoderType coderType : CoderType.values()) {
+            CoderState state = createChain(coderType);
+            AdaptiveHuffmanCoder[] trees;
+            if (coderType == CoderType.FGK) {
+                trees = new AdaptiveHuffmanCoder[] {new HuffmanTree(state), new ArrayHuffmanTree(state)};
+            } else {
+                trees = new AdaptiveHuffmanCoder[] {new VitterHuffmanTree(state)};
+            }
+            
+            for (AdaptiveHuffmanCoder tree : trees) {
+                // the rarest character's leaf is the deepest one next to the NYT node
+                int depth = codeLength(tree.copy(), 0);
+                assertEquals(tree.getClass().getSimpleName(), state.getCharacterCount(), depth);
+                assertTrue(tree.getClass().getSimpleName() + ": " + depth, depth >= 44);
+                byte[] bits = FGKTreeTest.encode(tree, symbols, 0, symbols.length);
+                assertArrayEquals(tree.getClass().getSimpleName(), symbols, FGKTreeTest.decode(coderType.createCoder(state), bits, symbols.length));
+                
+                // both FGK trees write the same bits
+                if (tree instanceof HuffmanTree) {
+                    objectBits = bits;
+                } else if (tree instanceof ArrayHuffmanTree) {
+                    assertArrayEquals(objectBits, bits);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void fibonacciFileRoundTrips() throws IOException {
+        // the file repeats its letters with Fibonacci frequencies, so coding it grows a chain
+        byte[] bytes = Files.readAllBytes(Paths.get(System.getProperty("testfiles.dir", "testfiles"), "fibonacci.txt"));
+        int[] symbols = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            symbols[i] = bytes[i] & 0xFF;
+        }
+        for (CoderType coderType : CoderType.values()) {
+            AdaptiveHuffmanCoder tree = coderType.createCoder();
+            byte[] bits = FGKTreeTest.encode(tree, symbols, 0, symbols.length);
+            assertArrayEquals(coderType.toString(), symbols, FGKTreeTest.decode(coderType.createCoder(), bits, symbols.length));
+            
+            // the letters are sorted, so they range from the first to the last symbol
+            int depth = 0;
+            for (int character = symbols[0]; character <= symbols[symbols.length - 1]; character++) {
+                depth = Math.max(depth, codeLength(tree.copy(), character));
+            }
+            assertTrue(coderType + ": " + depth, depth >= 20);
+        }
+    }
+    
+    @Test
+    public void snapshotOfTheDeepestTreeIsValid() throws IOException {
+        for (CoderType coderType : CoderType.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            createChain(coderType).write(new DataOutputStream(bytes));
+            CoderState.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        }
+    }
+    
+    // returns mostly the rarest characters, whose codes are the longest ones, and a few new ones
+    private int[] createSymbols() {
+        Random random = new Random(1);
+        int[] symbols = new int[100000];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = (random.nextInt(50) == 0) ? 1000 + random.nextInt(2000) : random.nextInt(8);
+        }
+        return symbols;
+    }
+    
+    // returns the length of the given character's code
+    private static int codeLength(AdaptiveHuffmanCoder tree, int character) throws IOException {
+        BitOutputStream out = new BitOutputStream(new ByteArrayOutputStream());
+        tree.encodeCharacter(character, out);
+        return (int) out.getBitCount();
+    }
+    
+    // creates a snapshot of the deepest tree whose root's weight does not exceed
+    // MAX_ROOT_WEIGHT: a chain where every internal node has a leaf as one child and the
+    // weights grow as slowly as the sibling property allows. The characters 0 and 1 have
+    // the weight 1, every other character i the weight of the internal node above
+    // i - 2 (Vitter's algorithm needs 1 more, as it keeps the internal nodes in front of
+    // the leaves of the same weight).
+    static CoderState createChain(CoderType coderType) {
+        int extraWeight = (coderType == CoderType.VITTER) ? 1 : 0;
+        List<Long> leafWeights = new ArrayList<Long>();
+        // the weights of the internal nodes above the characters
+        List<Long> internalWeights = new ArrayList<Long>();
+        long sum = 0;
+        while (true) {
+            int i = leafWeights.size();
+            long weight = (i < 2) ? 1 : internalWeights.get(i - 2) + extraWeight;
+            if (sum + weight > MAX_ROOT_WEIGHT) {
+                break;
+            }
+            sum += weight;
+            leafWeights.add(weight);
+            internalWeights.add(sum);
+        }
+        
+        // from the root down, the children of the internal node above the character i are
+        // the internal node above i - 1 (the NYT node for i = 0) and the leaf of i; the
+        // heavier one comes first, the internal node if both have the same weight
+        int leafCount = leafWeights.size();
+        int[] rightChildren = new int[2 * leafCount + 1];
+        int[] characters = new int[2 * leafCount + 1];
+        int[] weights = new int[2 * leafCount + 1];
+        int internalNode = 0;
+        weights[0] = (int) sum;
+        for (int i = leafCount - 1; i >= 0; i--) {
+            long childWeight = (i > 0) ? internalWeights.get(i - 1) : 0;
+            int firstChild = 2 * (leafCount - 1 - i) + 1;
+            boolean internalFirst = childWeight >= leafWeights.get(i);
+            int leaf = internalFirst ? firstChild + 1 : firstChild;
+            int child = internalFirst ? firstChild : firstChild + 1;
+            
+            rightChildren[internalNode] = firstChild;
+            characters[leaf] = i;
+            weights[leaf] = (int) (long) leafWeights.get(i);
+            weights[child] = (int) childWeight;
+            internalNode = child;
+        }
+        return new CoderState(coderType, rightChildren, characters, weights);
+    }
+}
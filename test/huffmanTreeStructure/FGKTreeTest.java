@@ -0,0 +1,125 @@
+package huffmanTreeStructure;
+
+import bitIO.BitInputStream;
+import bitIO.BitOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the FGK trees: the {@link HuffmanTree} and the {@link ArrayHuffmanTree} have to
+ * produce the same bits, and coders created from snapshots have to continue exactly
+ * where the original coders were.
+ * @author Raphael Brandis
+ */
+public class FGKTreeTest {
+    // the number of bits a new symbol is written with
+    private static final int SYMBOL_BITS = 21;
+    
+    @Test
+    public void objectAndArrayTreesProduceTheSameBits() throws IOException {
+        int[] symbols = createSymbols(50000, 400);
+        byte[] objectBits = encode(new HuffmanTree(), symbols, 0, symbols.length);
+        byte[] arrayBits = encode(new ArrayHuffmanTree(), symbols, 0, symbols.length);
+        assertArrayEquals(objectBits, arrayBits);
+        
+        // each tree decodes the other's output
+        assertArrayEquals(symbols, decode(new HuffmanTree(), arrayBits, symbols.length));
+        assertArrayEquals(symbols, decode(new ArrayHuffmanTree(), objectBits, symbols.length));
+    }
+    
+    @Test
+    public void objectAndArrayTreesRescaleTheSameWay() throws IOException {
+        int[] symbols = createSymbols(50000, 400);
+        AdaptiveHuffmanCoder objectTree = new HuffmanTree();
+        AdaptiveHuffmanCoder arrayTree = new ArrayHuffmanTree();
+        objectTree.setRescaleLimit(2000);
+        arrayTree.setRescaleLimit(2000);
+        byte[] objectBits = encode(objectTree, symbols, 0, symbols.length);
+        assertArrayEquals(objectBits, encode(arrayTree, symbols, 0, symbols.length));
+        
+        AdaptiveHuffmanCoder decodingTree = new ArrayHuffmanTree();
+        decodingTree.setRescaleLimit(2000);
+        assertArrayEquals(symbols, decode(decodingTree, objectBits, symbols.length));
+    }
+    
+    @Test
+    public void coderResumesFromSnapshot() throws IOException {
+        for (CoderType coderType : CoderType.values()) {
+            int[] symbols = createSymbols(20000, 300);
+            int half = symbols.length / 2;
+            AdaptiveHuffmanCoder tree = coderType.createCoder();
+            encode(tree, symbols, 0, half);
+            CoderState state = tree.getState();
+            
+            // the original coder, its copy and coders created from the snapshot continue
+            // with the same bits
+            byte[] expected = encode(tree.copy(), symbols, half, symbols.length);
+            assertArrayEquals(expected, encode(coderType.createCoder(state), symbols, half, symbols.length));
+            if (coderType == CoderType.FGK) {
+                assertArrayEquals(expected, encode(new HuffmanTree(state), symbols, half, symbols.length));
+                assertArrayEquals(expected, encode(new ArrayHuffmanTree(state), symbols, half, symbols.length));
+            }
+            assertArrayEquals(expected, encode(tree, symbols, half, symbols.length));
+            
+            int[] rest = new int[symbols.length - half];
+            System.arraycopy(symbols, half, rest, 0, rest.length);
+            assertArrayEquals(rest, decode(coderType.createCoder(state), expected, rest.length));
+        }
+    }
+    
+    // returns symbols from an alphabet of the given size whose frequencies differ a lot,
+    // including characters outside of the Basic Multilingual Plane
+    static int[] createSymbols(int count, int alphabetSize) {
+        Random random = new Random(count * 31 + alphabetSize);
+        int[] alphabet = new int[alphabetSize];
+        for (int i = 0; i < alphabetSize; i++) {
+            alphabet[i] = (i % 3 == 0) ? 0x10000 + 997 * i : 32 + i;
+        }
+        
+        int[] symbols = new int[count];
+        for (int i = 0; i < count; i++) {
+            // the square makes the first characters much more frequent than the last ones
+            double r = random.nextDouble();
+            symbols[i] = alphabet[(int) (r * r * alphabetSize)];
+        }
+        return symbols;
+    }
+    
+    // encodes the given symbols like the Encoder, writing new symbols with SYMBOL_BITS bits
+    static byte[] encode(AdaptiveHuffmanCoder tree, int[] symbols, int from, int to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BitOutputStream out = new BitOutputStream(bytes);
+        for (int i = from; i < to; i++) {
+            if (tree.characterExists(symbols[i])) {
+                tree.encodeCharacter(symbols[i], out);
+            } else {
+                tree.encodeNYTNode(out);
+                out.writeBits(symbols[i], SYMBOL_BITS);
+                tree.addCharacter(symbols[i]);
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+    
+    // decodes the given number of symbols written by encode()
+    static int[] decode(AdaptiveHuffmanCoder tree, byte[] bits, int count) throws IOException {
+        BitInputStream in = new BitInputStream(bits, 0, 8L * bits.length);
+        int[] symbols = new int[count];
+        for (int i = 0; i < count; i++) {
+            int number = tree.readHuffmanCode(in);
+            assertTrue("The bits ended early", number != -1);
+            if (number == tree.getNYTNodeNumber()) {
+                symbols[i] = (int) in.readBits(SYMBOL_BITS);
+                tree.addCharacter(symbols[i]);
+            } else {
+                symbols[i] = tree.decodeCharacterByNodeNumber(number);
+            }
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,159 @@
+package main;
+
+import huffmanTreeStructure.CoderType;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests decompressing ranges of symbols: {@link Decoder#decompressRange(String, long, long, OutputStream)}
+ * has to write exactly the symbols of the range, whether the file has been written in
+ * block mode or not.
+ * @author Raphael Brandis
+ */
+public class DecoderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the ranges that are decompressed, relative to the number of symbols n
+    private static final long[][] RANGES = {{0, -1}, {0, 0}, {0, 1}, {999, 2}, {1000, 1000}, {1234, 5678}, {-10, 100}, {-1, 1}, {5, 3}, {1, 0}};
+    
+    @Test
+    public void rangeOfText() throws IOException {
+        String text = createText(20000);
+        int[] codePoints = text.codePoints().toArray();
+        for (CoderType coderType : CoderType.values()) {
+            for (int blockSize : new int[] {0, 1000, 4096}) {
+                String compressed = this.compress(text.getBytes(StandardCharsets.UTF_8), new Encoder(coderType, SymbolType.TEXT, blockSize));
+                for (long[] range : RANGES) {
+                    long first = (range[0] < 0) ? codePoints.length + range[0] : range[0];
+                    long count = (range[1] < 0) ? Long.MAX_VALUE : range[1];
+                    int end = (int) Math.min(codePoints.length, first + Math.min(count, codePoints.length));
+                    byte[] expected = new String(codePoints, (int) first, end - (int) first).getBytes(StandardCharsets.UTF_8);
+                    assertArrayEquals(coderType + ", " + blockSize + ": " + Arrays.toString(range), expected, decompressRange(compressed, first, count));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void rangeOfBytes() throws IOException {
+        byte[] bytes = new byte[30000];
+        new Random(1).nextBytes(bytes);
+        for (int i = 0; i < bytes.length; i += 2) {
+            bytes[i] = (byte) (bytes[i] & 0x0F);
+        }
+        for (int blockSize : new int[] {0, 1000}) {
+            String compressed = this.compress(bytes, new Encoder(CoderType.FGK, SymbolType.BYTES, blockSize));
+            for (long[] range : RANGES) {
+                int first = (int) ((range[0] < 0) ? bytes.length + range[0] : range[0]);
+                long count = (range[1] < 0) ? Long.MAX_VALUE : range[1];
+                int end = (int) Math.min(bytes.length, first + Math.min(count, bytes.length));
+                assertArrayEquals(blockSize + ": " + Arrays.toString(range), Arrays.copyOfRange(bytes, first, end), decompressRange(compressed, first, count));
+            }
+        }
+    }
+    
+    @Test
+    public void rangeBehindTheEndIsEmpty() throws IOException {
+        String compressed = this.compress("abc".getBytes(StandardCharsets.UTF_8), new Encoder());
+        assertArrayEquals(new byte[0], decompressRange(compressed, 3, 10));
+        assertArrayEquals(new byte[0], decompressRange(compressed, 100, 10));
+    }
+    
+    @Test
+    public void coderIsReleasedIfThePayloadIsCorrupt() throws IOException {
+        String compressed = this.compress(createText(5000).getBytes(StandardCharsets.UTF_8), new Encoder());
+        RandomAccessFile file = new RandomAccessFile(compressed, "rw");
+        file.setLength(file.length() / 2);
+        file.close();
+        
+        CoderPool coders = new CoderPool(4);
+        Decoder decoder = new Decoder();
+        decoder.setCoderPool(coders);
+        try {
+            decoder.decompressRange(compressed, 0, Long.MAX_VALUE, new ByteArrayOutputStream());
+            fail("The truncated payload has been decompressed");
+        } catch (IOException e) {
+            assertEquals(1, coders.getIdleCoderCount());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void blockCountBeyondTheFileIsRejected() throws IOException {
+        String compressed = this.compress(createText(5000).getBytes(StandardCharsets.UTF_8), new Encoder(CoderType.FGK, SymbolType.TEXT, 1000));
+        RandomAccessFile file = new RandomAccessFile(compressed, "rw");
+        // the block count follows magic, version, coder, symbol type, character count and payload bits
+        file.seek(4 + 1 + 1 + 1 + 8 + 8);
+        file.writeInt(Integer.MAX_VALUE);
+        file.close();
+        decompressRange(compressed, 0, Long.MAX_VALUE);
+    }
+    
+    @Test
+    public void blockWithMoreSymbolsThanBitsIsRejected() throws IOException {
+        String compressed = this.compress(createText(5000).getBytes(StandardCharsets.UTF_8), new Encoder(CoderType.FGK, SymbolType.TEXT, 1000));
+        RandomAccessFile file = new RandomAccessFile(compressed, "rw");
+        file.seek(4 + 1 + 1 + 1 + 8 + 8);
+        int blockCount = file.readInt();
+        // the character count of the first block follows its offset in the index
+        long entry = file.length() - blockCount * CompressedBlock.ENTRY_SIZE + 8;
+        file.seek(entry);
+        long characterCount = file.readLong();
+        // keep the sum of the blocks equal to the character count in the header
+        file.seek(4 + 1 + 1 + 1);
+        long total = file.readLong();
+        file.seek(4 + 1 + 1 + 1);
+        file.writeLong(total - characterCount + Integer.MAX_VALUE);
+        file.seek(entry);
+        file.writeLong(Integer.MAX_VALUE);
+        file.close();
+        try {
+            decompressRange(compressed, 0, Long.MAX_VALUE);
+            fail("The corrupt block has been decompressed");
+        } catch (IOException e) {
+            assertEquals("Corrupt block index", e.getMessage());
+        }
+    }
+    
+    // writes the given bytes to a file and compresses it
+    // returns the path of the compressed file
+    private String compress(byte[] content, Encoder encoder) throws IOException {
+        File input = this.folder.newFile();
+        File output = this.folder.newFile();
+        OutputStream out = new FileOutputStream(input);
+        out.write(content);
+        out.close();
+        encoder.compressFile(input.getPath(), output.getPath());
+        return output.getPath();
+    }
+    
+    private static byte[] decompressRange(String compressed, long first, long count) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Decoder().decompressRange(compressed, first, count, out);
+        return out.toByteArray();
+    }
+    
+    // returns text mixing ASCII with characters of two, three and four bytes in UTF-8
+    static String createText(int length) {
+        String[] words = {"the ", "adaptive ", "Huffman ", "code ", "Grüße ", "naïve ", "日本語の", "テキスト", "😀 ", "🌍", "\n"};
+        Random random = new Random(length);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(words[random.nextInt(words.length)]);
+        }
+        return text.toString();
+    }
+}
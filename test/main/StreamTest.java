@@ -0,0 +1,150 @@
+package main;
+
+import huffmanTreeStructure.CoderState;
+import huffmanTreeStructure.CoderType;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests compressing and decompressing streams chunk by chunk with the
+ * {@link StreamEncoder} and the {@link StreamDecoder}.
+ * @author Raphael Brandis
+ */
+public class StreamTest {
+    @Test
+    public void syncFlushMakesEverythingSentSoFarDecodable() throws IOException {
+        byte[] text = DecoderTest.createText(30000).getBytes(StandardCharsets.UTF_8);
+        for (CoderType coderType : CoderType.values()) {
+            for (SymbolType symbolType : SymbolType.values()) {
+                Random random = new Random(42);
+                StreamEncoder encoder = new Encoder(coderType, symbolType, 0).newStream();
+                StreamDecoder decoder = new Decoder().newStream();
+                ByteArrayOutputStream received = new ByteArrayOutputStream();
+                
+                // messages of random length, each followed by a flush point; a message may end
+                // within a character, whose bytes are decompressed with the next message
+                int sent = 0;
+                while (sent < text.length) {
+                    int length = Math.min(text.length - sent, 1 + random.nextInt(500));
+                    encoder.update(text, sent, length);
+                    sent += length;
+                    encoder.syncFlush();
+                    transfer(encoder, decoder, received);
+                    
+                    byte[] expected = Arrays.copyOf(text, sent);
+                    if (symbolType == SymbolType.TEXT) {
+                        expected = Arrays.copyOf(text, completeCharacters(text, sent));
+                    }
+                    assertArrayEquals(coderType + ", " + symbolType + ": " + sent, expected, received.toByteArray());
+                }
+                
+                encoder.finish();
+                transfer(encoder, decoder, received);
+                assertArrayEquals(text, received.toByteArray());
+                assertTrue(encoder.isFinished());
+                assertTrue(decoder.isFinished());
+                assertEquals(0, decoder.getRemaining());
+            }
+        }
+    }
+    
+    @Test
+    public void streamResumesFromSnapshot() throws IOException {
+        byte[] text = DecoderTest.createText(20000).getBytes(StandardCharsets.UTF_8);
+        // the first half ends at a character's end, so nothing waits at the flush point
+        int half = text.length / 2;
+        while ((text[half] & 0xC0) == 0x80) {
+            half++;
+        }
+        for (CoderType coderType : CoderType.values()) {
+            for (SymbolType symbolType : SymbolType.values()) {
+                Encoder encoder = new Encoder(coderType, symbolType, 0);
+                encoder.setRescaleLimit(3000);
+                StreamEncoder original = encoder.newStream();
+                StreamDecoder decoder = new Decoder().newStream();
+                ByteArrayOutputStream received = new ByteArrayOutputStream();
+                
+                original.update(text, 0, half);
+                original.syncFlush();
+                transfer(original, decoder, received);
+                CoderState encoderState = original.getState();
+                CoderState decoderState = decoder.getState();
+                assertArrayEquals(toBytes(encoderState), toBytes(decoderState));
+                
+                // the original and the resumed StreamEncoder produce the same bytes
+                StreamEncoder resumed = encoder.resumeStream(encoderState);
+                original.update(text, half, text.length - half);
+                original.finish();
+                resumed.update(text, half, text.length - half);
+                resumed.finish();
+                byte[] rest = new byte[original.available()];
+                original.read(rest, 0, rest.length);
+                assertEquals(rest.length, resumed.available());
+                byte[] resumedRest = new byte[rest.length];
+                resumed.read(resumedRest, 0, resumedRest.length);
+                assertArrayEquals(coderType + ", " + symbolType, rest, resumedRest);
+                
+                StreamDecoder resumedDecoder = new Decoder().resumeStream(decoder.getHeader(), decoderState);
+                resumedDecoder.update(resumedRest);
+                transfer(resumed, resumedDecoder, received);
+                assertArrayEquals(text, received.toByteArray());
+                assertTrue(resumedDecoder.isFinished());
+            }
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void stateIsOnlyTakenAtFlushPoints() throws IOException {
+        StreamEncoder encoder = new Encoder().newStream();
+        encoder.update("abc");
+        encoder.getState();
+    }
+    
+    // returns the serialized snapshot
+    private static byte[] toBytes(CoderState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        state.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+    
+    // passes all compressed bytes that are available to the decoder and collects the
+    // decompressed bytes
+    static void transfer(StreamEncoder encoder, StreamDecoder decoder, ByteArrayOutputStream received) throws IOException {
+        byte[] buffer = new byte[4096];
+        int n = encoder.read(buffer, 0, buffer.length);
+        while (n > 0) {
+            decoder.update(buffer, 0, n);
+            n = encoder.read(buffer, 0, buffer.length);
+        }
+        n = decoder.read(buffer, 0, buffer.length);
+        while (n > 0) {
+            received.write(buffer, 0, n);
+            n = decoder.read(buffer, 0, buffer.length);
+        }
+    }
+    
+    // returns the number of bytes of the UTF-8 text's characters that are complete
+    // within the first length bytes
+    private static int completeCharacters(byte[] text, int length) {
+        int start = length;
+        while (start > 0 && (text[start - 1] & 0xC0) == 0x80) {
+            start--;
+        }
+        if (start == 0 || (text[start - 1] & 0x80) == 0) {
+            return length;
+        }
+        
+        // the lead byte of the last character tells how many bytes it has
+        int lead = text[start - 1] & 0xFF;
+        int characterLength = (lead >= 0xF0) ? 4 : (lead >= 0xE0) ? 3 : 2;
+        return (length - (start - 1) == characterLength) ? length : start - 1;
+    }
+}